@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ru.yandex.practicum.filmorate.mapper.FilmGenreMapper;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.mapper.FilmWithGenresExtractor;
+import ru.yandex.practicum.filmorate.mapper.GenreMapper;
+import ru.yandex.practicum.filmorate.mapper.MpaMapper;
+import ru.yandex.practicum.filmorate.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.recommendation.FilmRecommendationEngine;
+import ru.yandex.practicum.filmorate.recommendation.FriendRecommendationEngine;
+import ru.yandex.practicum.filmorate.service.impl.FilmServiceImpl;
+import ru.yandex.practicum.filmorate.service.impl.GenreServiceImpl;
+import ru.yandex.practicum.filmorate.service.impl.LikeWriteBehindQueue;
+import ru.yandex.practicum.filmorate.service.impl.MpaServiceImpl;
+import ru.yandex.practicum.filmorate.service.impl.UserServiceImpl;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.cache.PopularFilmsCache;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
+
+/**
+ * Отдельная in-memory база H2 со схемой приложения, заполненная синтетическими данными,
+ * и собранные вручную (без Spring-контекста) хранилища и сервисы поверх неё.
+ */
+public class BenchmarkDatabase {
+    private static final int GENRES_COUNT = 6;
+    private static final int MPA_COUNT = 5;
+
+    private final HikariDataSource dataSource;
+    final JdbcTemplate jdbcTemplate;
+    final PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex();
+    final FriendGraphIndex friendGraphIndex = new FriendGraphIndex();
+    final UserLikesIndex userLikesIndex = new UserLikesIndex();
+    final FilmDbStorage filmStorage;
+    final GenreDbStorage genreStorage;
+    final MpaDbStorage mpaStorage;
+    final UserDbStorage userStorage;
+    final UserServiceImpl userService;
+    final FilmServiceImpl filmService;
+
+    public BenchmarkDatabase() {
+        this("latest");
+    }
+
+    /**
+     * @param schemaVersion версия миграций Flyway, до которой поднимается схема, например "2.1" - без вторичных индексов
+     */
+    public BenchmarkDatabase(String schemaVersion) {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("password");
+        Flyway.configure()
+                .dataSource(dataSource)
+                .target(schemaVersion)
+                .load()
+                .migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        FilmMapper filmMapper = new FilmMapper();
+        filmStorage = new FilmDbStorage(jdbcTemplate, filmMapper, new FilmWithGenresExtractor(filmMapper),
+                popularFilmsIndex, userLikesIndex);
+        genreStorage = new GenreDbStorage(jdbcTemplate, new GenreMapper(), new FilmGenreMapper(),
+                new SimpleMeterRegistry());
+        mpaStorage = new MpaDbStorage(jdbcTemplate, new MpaMapper(), new SimpleMeterRegistry());
+        userStorage = new UserDbStorage(jdbcTemplate, new UserMapper(), friendGraphIndex);
+        EntityVersions entityVersions = new EntityVersions();
+        PopularFilmsCache popularFilmsCache = new PopularFilmsCache(new SimpleMeterRegistry(), Duration.ZERO);
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        userService = new UserServiceImpl(userStorage, new FriendRecommendationEngine(friendGraphIndex),
+                entityVersions, validator);
+        filmService = new FilmServiceImpl(filmStorage, new GenreServiceImpl(genreStorage),
+                new MpaServiceImpl(mpaStorage), userService,
+                new FilmRecommendationEngine(userLikesIndex), entityVersions, popularFilmsCache,
+                new LikeWriteBehindQueue(filmStorage, popularFilmsCache, new SimpleMeterRegistry(),
+                        false, 1, 0, 1, 0),
+                validator, new TransactionTemplate(new JdbcTransactionManager(dataSource)));
+    }
+
+    public void seed(int films, int users, int likesPerUser, int friendsPerUser) {
+        Random random = new Random(42);
+
+        List<Object[]> filmRows = new ArrayList<>(films);
+        for (int i = 1; i <= films; i++) {
+            filmRows.add(new Object[] { "Film " + i, "Description of film " + i,
+                    Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(i % 25_000)), 60 + i % 120,
+                    1 + random.nextInt(MPA_COUNT) });
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)",
+                filmRows);
+
+        List<Object[]> filmGenreRows = new ArrayList<>();
+        for (int filmId = 1; filmId <= films; filmId++) {
+            for (int genreId : randomDistinct(random, random.nextInt(4), GENRES_COUNT)) {
+                filmGenreRows.add(new Object[] { filmId, genreId });
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", filmGenreRows);
+
+        List<Object[]> userRows = new ArrayList<>(users);
+        for (int i = 1; i <= users; i++) {
+            userRows.add(new Object[] { "user" + i + "@example.com", "user" + i, "User " + i,
+                    Date.valueOf(LocalDate.of(1970, 1, 1).plusDays(i % 15_000)) });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)", userRows);
+
+        List<Object[]> likeRows = new ArrayList<>();
+        List<Object[]> friendRows = new ArrayList<>();
+        for (int userId = 1; userId <= users; userId++) {
+            for (int filmId : randomDistinct(random, Math.min(likesPerUser, films), films)) {
+                likeRows.add(new Object[] { filmId, userId });
+            }
+            for (int friendId : randomDistinct(random, Math.min(friendsPerUser, users - 1), users)) {
+                if (friendId != userId) {
+                    friendRows.add(new Object[] { userId, friendId });
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", likeRows);
+        jdbcTemplate.batchUpdate("INSERT INTO friends (user_id, friend_id) VALUES (?, ?)", friendRows);
+
+        popularFilmsIndex.rebuild(filmStorage.rebuildLikesCounts());
+        friendGraphIndex.rebuild(userStorage.loadFriendGraph());
+        userLikesIndex.rebuild(filmStorage.loadUserLikes());
+    }
+
+    public void shutdown() {
+        jdbcTemplate.execute("SHUTDOWN");
+        dataSource.close();
+    }
+
+    private static Set<Integer> randomDistinct(Random random, int count, int bound) {
+        Set<Integer> values = new HashSet<>();
+        while (values.size() < count) {
+            values.add(1 + random.nextInt(bound));
+        }
+        return values;
+    }
+}
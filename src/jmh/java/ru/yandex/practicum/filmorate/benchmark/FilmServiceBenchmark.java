@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmImportResult;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+/**
+ * Создание фильма через сервис: валидация MPA и жанров, вставка фильма и его жанров.
+ * {@code importFilms} - то же через пакетный импорт, результат в фильмах в секунду.
+ * {@code getFilmsPage} и {@code getFilmsPageFields} - страница списка целиком и только с полями для списка в UI.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmServiceBenchmark {
+    private static final int IMPORT_SIZE = 5000;
+    private static final int PAGE_SIZE = 100;
+    private static final Set<String> LIST_FIELDS = Set.of("id", "name", "likes");
+
+    @Param({ "1000" })
+    private int films;
+
+    @Param({ "0", "3", "6" })
+    private int genresPerFilm;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        database.seed(films, 100, 5, 5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public Film createFilm() {
+        return database.filmService.createFilm(film());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMPORT_SIZE)
+    public FilmImportResult importFilms() {
+        return database.filmService.importFilms(Stream.generate(this::film).limit(IMPORT_SIZE).iterator());
+    }
+
+    @Benchmark
+    public List<Film> getFilmsPage() {
+        return database.filmService.getFilmsPage(0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getFilmsPageFields() {
+        return database.filmService.getFilmsFields(LIST_FIELDS, 0, PAGE_SIZE);
+    }
+
+    private Film film() {
+        Film film = new Film();
+        film.setName("Benchmark Film");
+        film.setDescription("Film created by benchmark");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(120);
+        film.setMpa(new Mpa(3, null));
+        film.setGenres(genres());
+        return film;
+    }
+
+    private List<Genre> genres() {
+        return IntStream.rangeClosed(1, genresPerFilm)
+                .mapToObj(id -> new Genre(id, null))
+                .toList();
+    }
+}
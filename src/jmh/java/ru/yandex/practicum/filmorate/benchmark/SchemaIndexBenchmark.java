@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+/**
+ * Стоимость запросов по обратным связям до (schemaVersion=2.1) и после (latest) миграции со вторичными индексами.
+ * getCommonFriends и getMostPopularFilms хранилищ отвечают из in-memory индексов, поэтому рядом
+ * замеряются и их SQL-варианты, которые по-прежнему выполняются при пересчёте и сверке данных.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemaIndexBenchmark {
+
+    @Param({ "2.1", "latest" })
+    private String schemaVersion;
+
+    @Param({ "10000" })
+    private int films;
+
+    @Param({ "5000" })
+    private int users;
+
+    @Param({ "20" })
+    private int likesPerUser;
+
+    @Param({ "50" })
+    private int friendsPerUser;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(schemaVersion);
+        database.seed(films, users, likesPerUser, friendsPerUser);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends() {
+        return database.userStorage.getCommonFriends(1, 2);
+    }
+
+    @Benchmark
+    public List<Film> getMostPopularFilms() {
+        return database.filmStorage.getMostPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Integer> commonFriendsSql() {
+        return database.jdbcTemplate.queryForList(
+                "SELECT f1.friend_id FROM friends f1 " +
+                        "JOIN friends f2 ON f1.friend_id = f2.friend_id " +
+                        "WHERE f1.user_id = ? AND f2.user_id = ?",
+                Integer.class, 1, 2);
+    }
+
+    @Benchmark
+    public List<Integer> popularFilmsSql() {
+        return database.jdbcTemplate.queryForList(
+                "SELECT film_id FROM film_likes_count ORDER BY likes_count DESC, film_id LIMIT 10",
+                Integer.class);
+    }
+
+    @Benchmark
+    public List<Integer> filmsLikedByUser() {
+        return database.jdbcTemplate.queryForList(
+                "SELECT film_id FROM likes WHERE user_id = ?", Integer.class, users / 2);
+    }
+
+    @Benchmark
+    public List<Integer> followersOfUser() {
+        return database.jdbcTemplate.queryForList(
+                "SELECT user_id FROM friends WHERE friend_id = ?", Integer.class, users / 2);
+    }
+
+    @Benchmark
+    public Integer countFilmsByMpa() {
+        return database.jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM films WHERE mpa_id = ?", Integer.class, 3);
+    }
+}
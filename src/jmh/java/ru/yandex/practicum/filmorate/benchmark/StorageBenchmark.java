@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+
+/**
+ * Чтение из хранилищ на заполненной базе: популярные фильмы, жанры для страницы фильмов, общие друзья.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Param({ "1000", "10000" })
+    private int films;
+
+    @Param({ "1000" })
+    private int users;
+
+    @Param({ "20" })
+    private int likesPerUser;
+
+    @Param({ "50" })
+    private int friendsPerUser;
+
+    @Param({ "10" })
+    private int popularCount;
+
+    @Param({ "100" })
+    private int pageSize;
+
+    private BenchmarkDatabase database;
+    private List<Integer> filmIdsPage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        database.seed(films, users, likesPerUser, friendsPerUser);
+        filmIdsPage = IntStream.rangeClosed(1, Math.min(pageSize, films)).boxed().toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public List<Film> getMostPopularFilms() {
+        return database.filmStorage.getMostPopularFilms(popularCount);
+    }
+
+    @Benchmark
+    public Map<Integer, List<Genre>> getGenresForFilms() {
+        return database.genreStorage.getGenresForFilms(filmIdsPage);
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends() {
+        return database.userStorage.getCommonFriends(1, 2);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserImportResult;
+
+/**
+ * Создание пользователей по одному через {@code createUser} против пакетного импорта, результат в пользователях
+ * в секунду. {@code importExistingUsers} перезаписывает уже существующих пользователей, найденных по логину.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+    private static final int IMPORT_SIZE = 5000;
+
+    @Param({ "10000" })
+    private int users;
+
+    private BenchmarkDatabase database;
+    private int nextLogin;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        database.seed(100, users, 5, 5);
+        nextLogin = users;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public User createUser() {
+        return database.userService.createUser(user(++nextLogin));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMPORT_SIZE)
+    public UserImportResult importNewUsers() {
+        int from = nextLogin + 1;
+        nextLogin += IMPORT_SIZE;
+        return database.userService.importUsers(
+                IntStream.range(from, from + IMPORT_SIZE).mapToObj(this::user).iterator());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMPORT_SIZE)
+    public UserImportResult importExistingUsers() {
+        return database.userService.importUsers(
+                IntStream.rangeClosed(1, IMPORT_SIZE).mapToObj(i -> user(1 + i % users)).iterator());
+    }
+
+    private User user(int login) {
+        User user = new User();
+        user.setEmail("user" + login + "@example.com");
+        user.setLogin("user" + login);
+        user.setName("User " + login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
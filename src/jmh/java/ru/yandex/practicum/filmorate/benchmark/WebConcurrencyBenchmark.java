@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+/**
+ * Нагрузочный тест веб-слоя: поднимает приложение на платформенных или виртуальных потоках, заполняет базу
+ * фильмами и лайками и за одну операцию отправляет пачку одновременных запросов GET /films/{id} по случайным ID.
+ * Каждый такой запрос читает фильм из БД, поэтому проходит через пул соединений и bulkhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WebConcurrencyBenchmark {
+
+    @Param({ "false", "true" })
+    private boolean virtualThreads;
+
+    @Param({ "1000" })
+    private int concurrentClients;
+
+    @Param({ "50" })
+    private int tomcatMaxThreads;
+
+    @Param({ "10000" })
+    private int films;
+
+    @Param({ "1000" })
+    private int users;
+
+    @Param({ "20" })
+    private int likesPerUser;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private ExecutorService clientExecutor;
+    private String filmsUri;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .properties(
+                        "server.port=0",
+                        "logging.level.ru.yandex.practicum.filmorate=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:load-" + UUID.randomUUID(),
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "server.tomcat.threads.max=" + tomcatMaxThreads,
+                        "filmorate.datasource.bulkhead.enabled=true",
+                        "filmorate.datasource.bulkhead.acquire-timeout-ms=10000")
+                .run();
+        seed(context.getBean(FilmService.class), context.getBean(UserService.class));
+        String port = context.getEnvironment().getProperty("local.server.port");
+        filmsUri = "http://localhost:" + port + "/films/";
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        httpClient = HttpClient.newBuilder().executor(clientExecutor).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.close();
+        clientExecutor.shutdown();
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Responses {
+        public long ok;
+        public long rejected;
+    }
+
+    @Benchmark
+    public void concurrentFilmById(Responses responses) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<CompletableFuture<HttpResponse<Void>>> futures = new ArrayList<>(concurrentClients);
+        for (int i = 0; i < concurrentClients; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(filmsUri + (1 + random.nextInt(films))))
+                    .GET()
+                    .build();
+            futures.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> future : futures) {
+            if (future.join().statusCode() == 200) {
+                responses.ok++;
+            } else {
+                responses.rejected++;
+            }
+        }
+    }
+
+    private void seed(FilmService filmService, UserService userService) {
+        filmService.importFilms(IntStream.rangeClosed(1, films).mapToObj(this::film).iterator());
+        userService.importUsers(IntStream.rangeClosed(1, users).mapToObj(this::user).iterator());
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<LikeOperation> likes = new ArrayList<>();
+        for (int userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < likesPerUser; i++) {
+                likes.add(new LikeOperation(1 + random.nextInt(films), userId, LikeOperation.Type.LIKE));
+            }
+            if (likes.size() >= 5000) {
+                filmService.applyLikes(likes);
+                likes.clear();
+            }
+        }
+        if (!likes.isEmpty()) {
+            filmService.applyLikes(likes);
+        }
+    }
+
+    private Film film(int i) {
+        Film film = new Film();
+        film.setName("Film " + i);
+        film.setDescription("Film created by benchmark");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(120);
+        film.setMpa(new Mpa(1 + i % 5, null));
+        return film;
+    }
+
+    private User user(int i) {
+        User user = new User();
+        user.setEmail("user" + i + "@example.com");
+        user.setLogin("user" + i);
+        user.setName("User " + i);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
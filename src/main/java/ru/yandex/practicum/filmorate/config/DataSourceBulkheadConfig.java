@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Оборачивает DataSource в {@link BulkheadDataSource}. Вместе с spring.threads.virtual.enabled=true
+ * позволяет держать тысячи ожидающих запросов на виртуальных потоках, не перегружая пул соединений.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.datasource.bulkhead.enabled", havingValue = "true")
+@Slf4j
+public class DataSourceBulkheadConfig {
+
+    @Bean
+    public static BeanPostProcessor dataSourceBulkheadPostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof BulkheadDataSource) {
+                    return bean;
+                }
+                int maxConcurrent = environment.getProperty(
+                        "filmorate.datasource.bulkhead.max-concurrent", Integer.class, 10);
+                long acquireTimeoutMs = environment.getProperty(
+                        "filmorate.datasource.bulkhead.acquire-timeout-ms", Long.class, 2000L);
+                log.info("Database bulkhead enabled for '{}': {} concurrent connections, {} ms timeout",
+                        beanName, maxConcurrent, acquireTimeoutMs);
+                return new BulkheadDataSource(dataSource, maxConcurrent, acquireTimeoutMs);
+            }
+        };
+    }
+
+    /**
+     * Метрики семафора рядом с метриками пула hikaricp.connections.*: сколько запросов
+     * работает с БД и сколько ждут своей очереди.
+     */
+    @Bean
+    public MeterBinder dataSourceBulkheadMetrics(DataSource dataSource) {
+        return registry -> {
+            if (!(dataSource instanceof BulkheadDataSource bulkhead)) {
+                return;
+            }
+            Gauge.builder("filmorate.datasource.bulkhead.active", bulkhead, BulkheadDataSource::getActiveConnections)
+                    .description("Requests currently holding a database connection")
+                    .register(registry);
+            Gauge.builder("filmorate.datasource.bulkhead.queued", bulkhead, BulkheadDataSource::getQueueLength)
+                    .description("Requests waiting for a bulkhead permit")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.yandex.practicum.filmorate.metrics.CountingJdbcTemplate;
+import ru.yandex.practicum.filmorate.metrics.SqlBudget;
+
+/**
+ * Таймеры методов, помеченных @Timed (хранилища), и JdbcTemplate со счётчиком и бюджетом SQL-запросов.
+ * Таймеры HTTP-эндпоинтов (http.server.requests) публикует Spring Boot Actuator.
+ */
+@Configuration
+@EnableConfigurationProperties(JdbcProperties.class)
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties properties, SqlBudget sqlBudget) {
+        JdbcTemplate jdbcTemplate = new CountingJdbcTemplate(dataSource, sqlBudget);
+        JdbcProperties.Template template = properties.getTemplate();
+        jdbcTemplate.setFetchSize(template.getFetchSize());
+        jdbcTemplate.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) {
+            jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        }
+        return jdbcTemplate;
+    }
+}
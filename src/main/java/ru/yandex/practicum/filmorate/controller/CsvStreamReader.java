@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+/**
+ * Читает CSV (RFC 4180) из тела запроса по одной записи, не собирая весь ввод в памяти. Первая запись - заголовок,
+ * колонки сопоставляются полям объекта по имени через {@link ObjectMapper#convertValue}, пустое значение - null.
+ * Парная часть к {@link CsvStreamWriter}. Ошибка разбора записи прерывает чтение с {@link ValidationException},
+ * в сообщении указан номер записи без учёта заголовка.
+ */
+@Component
+@RequiredArgsConstructor
+public class CsvStreamReader {
+    private final ObjectMapper objectMapper;
+
+    public <T> Iterator<T> read(InputStream in, Class<T> type) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+        List<String> header = readRecord(reader);
+        if (header == null) {
+            return Collections.emptyIterator();
+        }
+
+        return new Iterator<>() {
+            private int index;
+            private List<String> next = readNext();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    if (next.size() != header.size()) {
+                        throw new ValidationException("Malformed row at index " + index + ": expected "
+                                + header.size() + " fields, got " + next.size());
+                    }
+                    Map<String, String> fields = new LinkedHashMap<>();
+                    for (int i = 0; i < header.size(); i++) {
+                        String value = next.get(i);
+                        fields.put(header.get(i), value.isEmpty() ? null : value);
+                    }
+                    return objectMapper.convertValue(fields, type);
+                } catch (IllegalArgumentException e) {
+                    throw new ValidationException("Malformed row at index " + index + ": "
+                            + e.getMessage().lines().findFirst().orElse(""));
+                } finally {
+                    index++;
+                    next = readNext();
+                }
+            }
+
+            private List<String> readNext() {
+                try {
+                    return readRecord(reader);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Следующая запись или null в конце ввода. Пустые строки пропускаются.
+     */
+    private static List<String> readRecord(BufferedReader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean empty = true;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (quoted) {
+                if (c != '"') {
+                    field.append((char) c);
+                    continue;
+                }
+                reader.mark(1);
+                if (reader.read() == '"') {
+                    field.append('"');
+                } else {
+                    reader.reset();
+                    quoted = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> {
+                    quoted = true;
+                    empty = false;
+                }
+                case ',' -> {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    empty = false;
+                }
+                case '\r' -> {
+                }
+                case '\n' -> {
+                    if (!empty) {
+                        fields.add(field.toString());
+                        return fields;
+                    }
+                }
+                default -> {
+                    field.append((char) c);
+                    empty = false;
+                }
+            }
+        }
+        if (quoted) {
+            throw new ValidationException("Malformed CSV: unterminated quoted field");
+        }
+        if (empty) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -1,7 +1,14 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -11,12 +18,17 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmImportResult;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 @RestController
@@ -25,10 +37,32 @@ import ru.yandex.practicum.filmorate.service.FilmService;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final NdjsonStreamWriter ndjsonStreamWriter;
+    private final JsonStreamReader jsonStreamReader;
 
     @GetMapping
-    public List<Film> getAllFilms() {
-        return filmService.getAllFilms();
+    public List<Film> getAllFilms(@RequestParam(name = "after_id", defaultValue = "0") int afterId,
+                                  @RequestParam(required = false) Integer limit) {
+        if (limit == null) {
+            return filmService.getAllFilms();
+        }
+        return filmService.getFilmsPage(afterId, limit);
+    }
+
+    /**
+     * Только поля из {@code fields}, например {@code fields=id,name,likes}: из БД читаются только нужные колонки,
+     * жанры загружаются, только если запрошены.
+     */
+    @GetMapping(params = "fields")
+    public List<Map<String, Object>> getAllFilmsFields(@RequestParam Set<String> fields,
+                                                       @RequestParam(name = "after_id", defaultValue = "0") int afterId,
+                                                       @RequestParam(required = false) Integer limit) {
+        return filmService.getFilmsFields(fields, afterId, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        return ndjsonStreamWriter.<Film>stream(filmService::streamAllFilms);
     }
 
     @PostMapping
@@ -36,13 +70,29 @@ public class FilmController {
         return filmService.createFilm(film);
     }
 
+    /**
+     * Тело - JSON-массив фильмов, читается потоково. Ответ - число сохранённых и отклонённых фильмов,
+     * со статусом 400, если разбор тела прервался на ошибочном элементе.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<FilmImportResult> importFilms(InputStream body) throws IOException {
+        FilmImportResult result = filmService.importFilms(jsonStreamReader.readArray(body, Film.class));
+        return ResponseEntity.status(result.isAborted() ? HttpStatus.BAD_REQUEST : HttpStatus.OK).body(result);
+    }
+
     @PutMapping
     public Film updateFilm(@Valid @RequestBody Film film) {
         return filmService.updateFilm(film);
     }
 
+    /**
+     * При совпадении If-None-Match с текущим ETag отвечает 304 без запросов к БД.
+     */
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable int id) {
+    public Film getFilmById(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(filmService.getFilmETag(id))) {
+            return null;
+        }
         return filmService.getFilmById(id)
                 .orElseThrow(() -> new NotFoundException("Film with ID " + id + " not found"));
     }
@@ -57,8 +107,16 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
+    @PostMapping("/likes/batch")
+    public List<LikeOperationResult> applyLikes(@RequestBody List<LikeOperation> operations) {
+        return filmService.applyLikes(operations);
+    }
+
     @GetMapping("/popular")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
+    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count, WebRequest request) {
+        if (request.checkNotModified(filmService.getPopularFilmsETag(count))) {
+            return null;
+        }
         return filmService.getPopularFilms(count);
     }
 }
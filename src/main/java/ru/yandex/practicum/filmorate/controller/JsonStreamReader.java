@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+/**
+ * Читает JSON-массив или NDJSON из тела запроса по одному элементу, не собирая весь ввод в памяти.
+ * Парная часть к {@link NdjsonStreamWriter}. Ошибка разбора элемента прерывает чтение
+ * с {@link ValidationException}, в сообщении указан номер элемента.
+ */
+@Component
+@RequiredArgsConstructor
+public class JsonStreamReader {
+    private final ObjectMapper objectMapper;
+
+    public <T> Iterator<T> readArray(InputStream in, Class<T> type) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(in);
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ValidationException("Request body must be a JSON array");
+            }
+            if (parser.nextToken() == JsonToken.END_ARRAY) {
+                return Collections.emptyIterator();
+            }
+            return indexed(objectMapper.readerFor(type).readValues(parser));
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * NDJSON: по одному JSON-объекту на строку, пустые строки пропускаются.
+     */
+    public <T> Iterator<T> readLines(InputStream in, Class<T> type) throws IOException {
+        try {
+            return indexed(objectMapper.readerFor(type).readValues(in));
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static <T> Iterator<T> indexed(MappingIterator<T> values) {
+        return new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    return values.hasNext();
+                } catch (RuntimeException e) {
+                    throw malformed(e);
+                }
+            }
+
+            @Override
+            public T next() {
+                try {
+                    return values.next();
+                } catch (RuntimeException e) {
+                    throw malformed(e);
+                } finally {
+                    index++;
+                }
+            }
+
+            private RuntimeException malformed(RuntimeException e) {
+                Throwable cause = e instanceof RuntimeJsonMappingException ? e : e.getCause();
+                if (!(cause instanceof RuntimeJsonMappingException || cause instanceof JsonProcessingException)) {
+                    return e;
+                }
+                return new ValidationException("Malformed element at index " + index + ": "
+                        + cause.getMessage().lines().findFirst().orElse(""));
+            }
+        };
+    }
+}
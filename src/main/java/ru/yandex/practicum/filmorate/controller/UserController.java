@@ -1,7 +1,14 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -9,13 +16,20 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserImportResult;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 @RestController
@@ -23,11 +37,60 @@ import ru.yandex.practicum.filmorate.service.UserService;
 @Slf4j
 @RequiredArgsConstructor
 public class UserController {
+    private static final List<String> USER_CSV_HEADER = List.of("id", "email", "login", "name", "birthday");
+    private static final List<String> FRIENDSHIP_CSV_HEADER = List.of("user_id", "friend_id");
+
     private final UserService userService;
+    private final FilmService filmService;
+    private final NdjsonStreamWriter ndjsonStreamWriter;
+    private final CsvStreamWriter csvStreamWriter;
+    private final JsonStreamReader jsonStreamReader;
+    private final CsvStreamReader csvStreamReader;
 
     @GetMapping
-    public List<User> getAllUsers() {
-        return userService.getAllUsers();
+    public List<User> getAllUsers(@RequestParam(name = "after_id", defaultValue = "0") int afterId,
+                                  @RequestParam(required = false) Integer limit) {
+        if (limit == null) {
+            return userService.getAllUsers();
+        }
+        return userService.getUsersPage(afterId, limit);
+    }
+
+    /**
+     * Только поля из {@code fields}, например {@code fields=id,login}: из БД читаются только нужные колонки.
+     */
+    @GetMapping(params = "fields")
+    public List<Map<String, Object>> getAllUsersFields(@RequestParam Set<String> fields,
+                                                       @RequestParam(name = "after_id", defaultValue = "0") int afterId,
+                                                       @RequestParam(required = false) Integer limit) {
+        return userService.getUsersFields(fields, afterId, limit);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        return ndjsonStreamWriter.<User>stream(userService::streamAllUsers);
+    }
+
+    /**
+     * Колонки совпадают с полями пользователя, поэтому выгрузку можно загрузить обратно через {@code /users/bulk}.
+     */
+    @GetMapping(produces = CsvStreamWriter.TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsersAsCsv() {
+        return csvStreamWriter.<User>stream(USER_CSV_HEADER,
+                user -> List.of(user.getId(), user.getEmail(), user.getLogin(), user.getName(), user.getBirthday()),
+                userService::streamAllUsers);
+    }
+
+    @GetMapping("/friendships")
+    public ResponseEntity<StreamingResponseBody> exportFriendships() {
+        return ndjsonStreamWriter.<Friendship>stream(userService::streamAllFriendships);
+    }
+
+    @GetMapping(value = "/friendships", produces = CsvStreamWriter.TEXT_CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFriendshipsAsCsv() {
+        return csvStreamWriter.<Friendship>stream(FRIENDSHIP_CSV_HEADER,
+                friendship -> List.of(friendship.getUserId(), friendship.getFriendId()),
+                userService::streamAllFriendships);
     }
 
     @PostMapping
@@ -35,13 +98,36 @@ public class UserController {
         return userService.createUser(user);
     }
 
+    /**
+     * Тело - NDJSON, читается потоково. Пользователи с известным логином обновляются, остальные создаются.
+     * Ответ - отчёт об импорте, со статусом 400, если разбор тела прервался на ошибочной строке.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<UserImportResult> importUsers(InputStream body) throws IOException {
+        return importResponse(userService.importUsers(jsonStreamReader.readLines(body, User.class)));
+    }
+
+    /**
+     * Тело - CSV с заголовком из имён полей пользователя, например {@code email,login,name,birthday}.
+     */
+    @PostMapping(value = "/bulk", consumes = CsvStreamWriter.TEXT_CSV_VALUE)
+    public ResponseEntity<UserImportResult> importUsersFromCsv(InputStream body) throws IOException {
+        return importResponse(userService.importUsers(csvStreamReader.read(body, User.class)));
+    }
+
     @PutMapping
     public User updateUser(@Valid @RequestBody User user) {
         return userService.updateUser(user);
     }
 
+    /**
+     * При совпадении If-None-Match с текущим ETag отвечает 304 без запросов к БД.
+     */
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable int id) {
+    public User getUserById(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(userService.getUserETag(id))) {
+            return null;
+        }
         return userService.getUserById(id)
                 .orElseThrow(() -> new NotFoundException("User with ID " + id + " not found"));
     }
@@ -57,7 +143,10 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public List<User> getFriends(@PathVariable int id) {
+    public List<User> getFriends(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(userService.getFriendsETag(id))) {
+            return null;
+        }
         return userService.getFriends(id);
     }
 
@@ -65,4 +154,20 @@ public class UserController {
     public List<User> getCommonFriends(@PathVariable int id, @PathVariable int otherId) {
         return userService.getCommonFriends(id, otherId);
     }
+
+    @GetMapping("/{id}/recommendations")
+    public List<User> getRecommendations(@PathVariable int id,
+                                         @RequestParam(defaultValue = "10") int limit) {
+        return userService.getRecommendations(id, limit);
+    }
+
+    @GetMapping("/{id}/recommended-films")
+    public List<Film> getRecommendedFilms(@PathVariable int id,
+                                          @RequestParam(defaultValue = "10") int limit) {
+        return filmService.getRecommendedFilms(id, limit);
+    }
+
+    private static ResponseEntity<UserImportResult> importResponse(UserImportResult result) {
+        return ResponseEntity.status(result.isAborted() ? HttpStatus.BAD_REQUEST : HttpStatus.OK).body(result);
+    }
 }
@@ -5,6 +5,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -47,6 +48,27 @@ public class ErrorHandler {
         return Map.of(ERROR_KEY, errorMessage);
     }
 
+    @ExceptionHandler(TooManyRequestsException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public Map<String, String> handleTooManyRequestsException(final TooManyRequestsException e) {
+        log.warn("Request rejected: {}", e.getMessage());
+        return Map.of(ERROR_KEY, e.getMessage());
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleServiceUnavailableException(final ServiceUnavailableException e) {
+        log.warn("Request rejected: {}", e.getMessage());
+        return Map.of(ERROR_KEY, e.getMessage());
+    }
+
+    @ExceptionHandler(CannotGetJdbcConnectionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleCannotGetJdbcConnectionException(final CannotGetJdbcConnectionException e) {
+        log.warn("Database is overloaded: {}", e.getMessage());
+        return Map.of(ERROR_KEY, "Service temporarily unavailable");
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map<String, String> handleException(final Exception e) {
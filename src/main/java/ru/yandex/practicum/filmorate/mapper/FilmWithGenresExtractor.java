@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+/**
+ * Собирает фильмы с жанрами из результата LEFT JOIN с film_genres:
+ * одна строка на пару фильм-жанр, колонки genre_id и genre_name могут быть NULL.
+ * Строки одного фильма должны идти подряд (ORDER BY f.film_id).
+ */
+@Component
+@RequiredArgsConstructor
+public class FilmWithGenresExtractor implements ResultSetExtractor<List<Film>> {
+    private final FilmMapper filmMapper;
+
+    @Override
+    public List<Film> extractData(ResultSet rs) throws SQLException {
+        List<Film> films = new ArrayList<>();
+        stream(rs, films::add);
+        return films;
+    }
+
+    /**
+     * Передаёт каждый собранный фильм в consumer, не накапливая весь результат в памяти.
+     */
+    public void stream(ResultSet rs, Consumer<Film> consumer) throws SQLException {
+        Film current = null;
+        int rowNum = 0;
+        while (rs.next()) {
+            int filmId = rs.getInt("film_id");
+            if (current == null || current.getId() != filmId) {
+                if (current != null) {
+                    consumer.accept(current);
+                }
+                current = filmMapper.mapRow(rs, rowNum);
+                current.setGenres(new ArrayList<>());
+            }
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                current.getGenres().add(new Genre(genreId, rs.getString("genre_name")));
+            }
+            rowNum++;
+        }
+        if (current != null) {
+            consumer.accept(current);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * JdbcTemplate, который учитывает каждое обращение к БД в {@link SqlTrace} текущего HTTP-запроса
+ * и проверяет бюджет {@link SqlBudget}. Пакетный запрос (batchUpdate) считается одним обращением.
+ */
+public class CountingJdbcTemplate extends JdbcTemplate {
+    private static final String APPLICATION_PACKAGE = "ru.yandex.practicum.filmorate.";
+    private static final String METRICS_PACKAGE = CountingJdbcTemplate.class.getPackageName() + ".";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private final SqlBudget sqlBudget;
+
+    public CountingJdbcTemplate(DataSource dataSource, SqlBudget sqlBudget) {
+        super(dataSource);
+        this.sqlBudget = sqlBudget;
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        SqlTrace trace = SqlStatementCounter.current();
+        if (trace != null) {
+            trace.record(sqlBudget.isTraceCallSites() ? callSite() : null);
+            sqlBudget.check(trace);
+        }
+        super.applyStatementSettings(stmt);
+    }
+
+    private static String callSite() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(APPLICATION_PACKAGE)
+                        && !frame.getClassName().startsWith(METRICS_PACKAGE))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                        + "." + frame.getMethodName())
+                .orElse("unknown"));
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.io.IOException;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+/**
+ * Пропускает данные в исходный поток, подсчитывая записанные байты.
+ */
+class CountingServletOutputStream extends ServletOutputStream {
+    private final ServletOutputStream delegate;
+    private long bytesWritten;
+
+    CountingServletOutputStream(ServletOutputStream delegate) {
+        this.delegate = delegate;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        delegate.write(b);
+        bytesWritten++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        delegate.write(b, off, len);
+        bytesWritten += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    public boolean isReady() {
+        return delegate.isReady();
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+        delegate.setWriteListener(writeListener);
+    }
+}
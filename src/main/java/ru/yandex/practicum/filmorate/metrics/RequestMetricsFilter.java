@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.io.IOException;
+
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Для каждого HTTP-запроса записывает число SQL-запросов (filmorate.http.sql.statements),
+ * сверяя его с {@link SqlBudget}, и размер тела ответа (filmorate.http.response.size) с тегами method и uri, как у http.server.requests.
+ * Для асинхронных ответов (NDJSON) размер записывается по завершении, SQL-запросы потока записи не учитываются.
+ * Учитываются ответы, записанные через getOutputStream(), как это делают конвертеры Jackson.
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestMetricsFilter extends OncePerRequestFilter {
+    private final MeterRegistry meterRegistry;
+    private final SqlBudget sqlBudget;
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        CountingResponse countingResponse = new CountingResponse(response);
+        SqlStatementCounter.start(() -> request.getMethod() + " " + uriTag(request));
+        SqlTrace trace;
+        try {
+            filterChain.doFilter(request, countingResponse);
+        } finally {
+            trace = SqlStatementCounter.stop();
+        }
+
+        String method = request.getMethod();
+        String uri = uriTag(request);
+        summary("filmorate.http.sql.statements", "SQL statements executed per request", method, uri)
+                .record(trace.getStatements());
+        sqlBudget.report(trace);
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    recordResponseSize(method, uri, countingResponse);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        } else {
+            recordResponseSize(method, uri, countingResponse);
+        }
+    }
+
+    private void recordResponseSize(String method, String uri, CountingResponse response) {
+        summary("filmorate.http.response.size", "Response body size", method, uri)
+                .record(response.getBytesWritten());
+    }
+
+    private DistributionSummary summary(String name, String description, String method, String uri) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit(name.endsWith("size") ? "bytes" : "statements")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meterRegistry);
+    }
+
+    private static String uriTag(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "UNKNOWN" : pattern.toString();
+    }
+
+    private static class CountingResponse extends HttpServletResponseWrapper {
+        private CountingServletOutputStream outputStream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CountingServletOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        long getBytesWritten() {
+            return outputStream == null ? 0 : outputStream.getBytesWritten();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Допустимое число SQL-запросов на один HTTP-запрос.
+ * Лимит берётся из файла baseline (строки вида "GET /films/{id} 2"), для остальных эндпоинтов -
+ * filmorate.sql.budget.max-statements. В режиме REJECT превышение прерывает запрос,
+ * поэтому с baseline в тестах любой рост числа запросов эндпоинта роняет тест.
+ */
+@Component
+@Slf4j
+public class SqlBudget {
+    public enum Mode {
+        OFF, LOG, REJECT
+    }
+
+    private final Mode mode;
+    private final int maxStatements;
+    private final boolean traceCallSites;
+    private final Map<String, Integer> baseline;
+
+    public SqlBudget(@Value("${filmorate.sql.budget.mode:LOG}") Mode mode,
+                     @Value("${filmorate.sql.budget.max-statements:20}") int maxStatements,
+                     @Value("${filmorate.sql.budget.trace:false}") boolean traceCallSites,
+                     @Value("${filmorate.sql.budget.baseline:#{null}}") Resource baseline) {
+        this.mode = mode;
+        this.maxStatements = maxStatements;
+        this.traceCallSites = traceCallSites;
+        this.baseline = baseline == null ? Map.of() : load(baseline);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isTraceCallSites() {
+        return traceCallSites;
+    }
+
+    public int limitFor(String endpoint) {
+        return baseline.getOrDefault(endpoint, maxStatements);
+    }
+
+    /**
+     * Вызывается после каждого SQL-запроса.
+     */
+    void check(SqlTrace trace) {
+        if (mode != Mode.REJECT) {
+            return;
+        }
+        int limit = limitFor(trace.getEndpoint());
+        if (trace.getStatements() > limit) {
+            throw new SqlBudgetExceededException(String.format("%s exceeded SQL budget of %d statements: %s",
+                    trace.getEndpoint(), limit, trace.getCallSites()));
+        }
+    }
+
+    /**
+     * Вызывается по завершении HTTP-запроса.
+     */
+    void report(SqlTrace trace) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        int limit = limitFor(trace.getEndpoint());
+        if (trace.getStatements() > limit) {
+            log.warn("{} executed {} SQL statements, budget is {}: {}",
+                    trace.getEndpoint(), trace.getStatements(), limit, trace.getCallSites());
+        } else {
+            log.debug("{} executed {} SQL statements", trace.getEndpoint(), trace.getStatements());
+        }
+    }
+
+    private static Map<String, Integer> load(Resource resource) {
+        Map<String, Integer> limits = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int separator = line.lastIndexOf(' ');
+                limits.put(line.substring(0, separator).strip(), Integer.parseInt(line.substring(separator + 1)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read SQL budget baseline " + resource, e);
+        }
+        log.info("Loaded SQL budget baseline for {} endpoints", limits.size());
+        return limits;
+    }
+}
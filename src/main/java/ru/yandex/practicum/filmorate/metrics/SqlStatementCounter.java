@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Привязывает {@link SqlTrace} к потоку, обрабатывающему HTTP-запрос.
+ * Запросы, выполненные вне {@link #start(Supplier)}/{@link #stop()}, не учитываются.
+ */
+public final class SqlStatementCounter {
+    private static final ThreadLocal<SqlTrace> TRACE = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    public static SqlTrace start(Supplier<String> endpoint) {
+        SqlTrace trace = new SqlTrace(endpoint);
+        TRACE.set(trace);
+        return trace;
+    }
+
+    public static SqlTrace current() {
+        return TRACE.get();
+    }
+
+    public static SqlTrace stop() {
+        SqlTrace trace = TRACE.get();
+        TRACE.remove();
+        return trace;
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * SQL-запросы одного HTTP-запроса: их число и, если включена трассировка,
+ * методы приложения, из которых они были выполнены.
+ */
+public class SqlTrace {
+    private static final int MAX_CALL_SITES = 100;
+
+    private final Supplier<String> endpoint;
+    private final List<String> callSites = new ArrayList<>();
+    private int statements;
+
+    public SqlTrace(Supplier<String> endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Эндпоинт в виде "GET /films/{id}". До выбора обработчика шаблон пути ещё неизвестен.
+     */
+    public String getEndpoint() {
+        return endpoint.get();
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public List<String> getCallSites() {
+        return Collections.unmodifiableList(callSites);
+    }
+
+    void record(String callSite) {
+        statements++;
+        if (callSite != null && callSites.size() < MAX_CALL_SITES) {
+            callSites.add(callSite);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.Optional;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Поля фильма, которые можно запросить параметром {@code fields}. {@code key} - имя поля в JSON,
+ * {@link #LIKES} - число лайков, которого нет в полном представлении фильма.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum FilmField {
+    ID("id"),
+    NAME("name"),
+    DESCRIPTION("description"),
+    RELEASE_DATE("releaseDate"),
+    DURATION("duration"),
+    MPA("mpa"),
+    GENRES("genres"),
+    LIKES("likes");
+
+    private final String key;
+
+    public static Optional<FilmField> fromKey(String key) {
+        for (FilmField field : values()) {
+            if (field.key.equals(key)) {
+                return Optional.of(field);
+            }
+        }
+        return Optional.empty();
+    }
+}
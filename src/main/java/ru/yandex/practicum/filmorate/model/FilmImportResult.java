@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class FilmImportResult {
+    private int imported;
+    private int rejected;
+    private boolean aborted;
+    private List<ImportError> errors = new ArrayList<>();
+}
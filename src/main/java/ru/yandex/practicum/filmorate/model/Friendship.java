@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Направленная связь дружбы: пользователь {@code userId} добавил в друзья {@code friendId}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Friendship {
+    private int userId;
+    private int friendId;
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Причина отказа для элемента импорта, {@code index} - номер элемента во входных данных, считается с нуля.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportError {
+    private int index;
+    private String error;
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LikeOperation {
+    private int filmId;
+    private int userId;
+    private Type op;
+
+    public enum Type {
+        LIKE,
+        UNLIKE
+    }
+}
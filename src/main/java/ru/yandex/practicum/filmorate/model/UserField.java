@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.Optional;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Поля пользователя, которые можно запросить параметром {@code fields}. {@code key} - имя поля в JSON.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum UserField {
+    ID("id"),
+    EMAIL("email"),
+    LOGIN("login"),
+    NAME("name"),
+    BIRTHDAY("birthday");
+
+    private final String key;
+
+    public static Optional<UserField> fromKey(String key) {
+        for (UserField field : values()) {
+            if (field.key.equals(key)) {
+                return Optional.of(field);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Итог импорта пользователей: {@code updated} - пользователи, найденные по логину и перезаписанные,
+ * {@code aborted} - импорт остановлен на строке, которую не удалось разобрать.
+ */
+@Data
+public class UserImportResult {
+    private int created;
+    private int updated;
+    private int rejected;
+    private boolean aborted;
+    private List<ImportError> errors = new ArrayList<>();
+}
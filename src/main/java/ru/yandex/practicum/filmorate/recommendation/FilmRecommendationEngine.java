@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
+
+/**
+ * Коллаборативная фильтрация по лайкам: находит пользователей с наибольшим
+ * пересечением лайков и рекомендует фильмы, которые понравились им, но ещё не отмечены пользователем.
+ * Вклад каждого похожего пользователя в балл фильма равен размеру пересечения.
+ */
+@Component
+@RequiredArgsConstructor
+public class FilmRecommendationEngine {
+    static final int PARALLEL_THRESHOLD = 2_000;
+    static final int SIMILAR_USERS = 10;
+
+    private final UserLikesIndex userLikesIndex;
+
+    /**
+     * ID рекомендуемых фильмов по убыванию балла, при равенстве - по возрастанию ID.
+     */
+    public int[] recommend(int userId, int limit) {
+        int[] likedFilmIds = userLikesIndex.getLikedFilmIds(userId);
+        if (likedFilmIds.length == 0) {
+            return new int[0];
+        }
+
+        Map<Integer, int[]> likes = userLikesIndex.asMap();
+        Stream<Map.Entry<Integer, int[]>> entries = likes.size() < PARALLEL_THRESHOLD
+                ? likes.entrySet().stream()
+                : likes.entrySet().parallelStream();
+        long[] similarUsers = entries
+                .filter(entry -> entry.getKey() != userId)
+                .mapToLong(entry -> key(entry.getKey(), UserLikesIndex.countCommon(likedFilmIds, entry.getValue())))
+                .filter(key -> scoreOf(key) > 0)
+                .sorted()
+                .limit(SIMILAR_USERS)
+                .toArray();
+
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (long similarUser : similarUsers) {
+            int overlap = scoreOf(similarUser);
+            for (int filmId : userLikesIndex.getLikedFilmIds(idOf(similarUser))) {
+                if (Arrays.binarySearch(likedFilmIds, filmId) < 0) {
+                    scores.merge(filmId, overlap, Integer::sum);
+                }
+            }
+        }
+
+        return scores.entrySet().stream()
+                .mapToLong(entry -> key(entry.getKey(), entry.getValue()))
+                .sorted()
+                .limit(limit)
+                .mapToInt(FilmRecommendationEngine::idOf)
+                .toArray();
+    }
+
+    private static long key(int id, int score) {
+        return ((long) (Integer.MAX_VALUE - score) << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static int idOf(long key) {
+        return (int) key;
+    }
+
+    private static int scoreOf(long key) {
+        return Integer.MAX_VALUE - (int) (key >>> 32);
+    }
+}
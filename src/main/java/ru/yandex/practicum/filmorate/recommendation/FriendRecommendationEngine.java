@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+
+/**
+ * Рекомендации "друзья друзей": обход графа дружбы на два шага от пользователя.
+ * Кандидат получает по одному баллу за каждого общего друга, сам пользователь
+ * и его текущие друзья исключаются. При большом числе рёбер подсчёт идёт параллельно.
+ * Последние результаты кэшируются и сбрасываются при любом изменении графа.
+ */
+@Component
+@RequiredArgsConstructor
+public class FriendRecommendationEngine {
+    static final int PARALLEL_THRESHOLD = 20_000;
+    private static final int MAX_CACHED_USERS = 1024;
+
+    private final FriendGraphIndex friendGraphIndex;
+    private final Map<Integer, CachedRecommendations> cache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, CachedRecommendations> eldest) {
+                    return size() > MAX_CACHED_USERS;
+                }
+            };
+
+    /**
+     * ID рекомендуемых пользователей по убыванию числа общих друзей, при равенстве - по возрастанию ID.
+     */
+    public int[] recommend(int userId, int limit) {
+        long version = friendGraphIndex.getVersion();
+        CachedRecommendations cached;
+        synchronized (cache) {
+            cached = cache.get(userId);
+        }
+        if (cached != null && cached.version() == version && cached.covers(limit)) {
+            return Arrays.copyOf(cached.userIds(), Math.min(limit, cached.userIds().length));
+        }
+
+        int[] userIds = rank(score(userId), limit);
+        synchronized (cache) {
+            cache.put(userId, new CachedRecommendations(version, limit, userIds));
+        }
+        return userIds.clone();
+    }
+
+    private Map<Integer, Integer> score(int userId) {
+        int[] friendIds = friendGraphIndex.getFriendIds(userId);
+        long edges = 0;
+        for (int friendId : friendIds) {
+            edges += friendGraphIndex.getFriendIds(friendId).length;
+        }
+
+        if (edges < PARALLEL_THRESHOLD) {
+            Map<Integer, Integer> scores = new HashMap<>();
+            for (int friendId : friendIds) {
+                accumulate(scores, userId, friendIds, friendId);
+            }
+            return scores;
+        }
+        return Arrays.stream(friendIds)
+                .parallel()
+                .collect(HashMap::new,
+                        (scores, friendId) -> accumulate(scores, userId, friendIds, friendId),
+                        (left, right) -> right.forEach((id, score) -> left.merge(id, score, Integer::sum)));
+    }
+
+    private void accumulate(Map<Integer, Integer> scores, int userId, int[] friendIds, int friendId) {
+        for (int candidateId : friendGraphIndex.getFriendIds(friendId)) {
+            if (candidateId != userId && Arrays.binarySearch(friendIds, candidateId) < 0) {
+                scores.merge(candidateId, 1, Integer::sum);
+            }
+        }
+    }
+
+    private static int[] rank(Map<Integer, Integer> scores, int limit) {
+        long[] keys = new long[scores.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+            keys[i++] = ((long) (Integer.MAX_VALUE - entry.getValue()) << 32) | (entry.getKey() & 0xFFFFFFFFL);
+        }
+        Arrays.sort(keys);
+
+        int[] userIds = new int[Math.min(limit, keys.length)];
+        for (int j = 0; j < userIds.length; j++) {
+            userIds[j] = (int) keys[j];
+        }
+        return userIds;
+    }
+
+    private record CachedRecommendations(long version, int limit, int[] userIds) {
+        boolean covers(int requestedLimit) {
+            return requestedLimit <= limit || userIds.length < limit;
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package ru.yandex.practicum.filmorate.service;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmImportResult;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
 
 /**
  * Интерфейс сервиса для работы с фильмами
@@ -12,15 +19,46 @@ public interface FilmService {
 
     Film createFilm(Film film);
 
+    /**
+     * Импорт фильмов по мере чтения из {@code films}: корректные фильмы сохраняются пакетами, некорректные
+     * пропускаются и перечисляются в отчёте. Если элемент не разбирается, импорт останавливается: прочитанные
+     * до него фильмы сохраняются, а в отчёте выставляется {@code aborted} и ошибка с номером элемента.
+     */
+    FilmImportResult importFilms(Iterator<Film> films);
+
     Film updateFilm(Film film);
 
     Optional<Film> getFilmById(int id);
 
+    /**
+     * ETag фильма, вычисляется без обращения к БД.
+     */
+    String getFilmETag(int id);
+
     List<Film> getAllFilms();
 
+    List<Film> getFilmsPage(int afterId, int limit);
+
+    /**
+     * Фильмы только с запрошенными полями (имена как в JSON фильма, плюс {@code likes}) и всегда с {@code id}.
+     * Без {@code limit} - первая страница после {@code afterId} наибольшего допустимого размера.
+     */
+    List<Map<String, Object>> getFilmsFields(Set<String> fields, int afterId, Integer limit);
+
+    void streamAllFilms(Consumer<Film> consumer);
+
     void addLike(int filmId, int userId);
 
     void removeLike(int filmId, int userId);
 
+    List<LikeOperationResult> applyLikes(List<LikeOperation> operations);
+
     List<Film> getPopularFilms(int count);
+
+    /**
+     * ETag списка популярных фильмов, совпадает с версией ответа в кэше популярных фильмов.
+     */
+    String getPopularFilmsETag(int count);
+
+    List<Film> getRecommendedFilms(int userId, int limit);
 }
@@ -16,7 +16,24 @@ public interface GenreService {
 
     Map<Integer, List<Genre>> getGenresForFilms(List<Integer> filmIds);
 
+    /**
+     * Проверяет за один проход, что все жанры существуют, и возвращает их без повторов по возрастанию ID.
+     * Для null возвращает пустой список.
+     */
+    List<Genre> resolveGenres(List<Genre> genres);
+
+    /**
+     * Жанры должны быть предварительно проверены через {@link #resolveGenres(List)}.
+     */
     void addGenresToFilm(int filmId, List<Genre> genres);
 
+    /**
+     * Пакетный вариант {@link #addGenresToFilm(int, List)} для новых фильмов.
+     */
+    void addGenresToFilms(Map<Integer, List<Genre>> genresByFilm);
+
+    /**
+     * Жанры должны быть предварительно проверены через {@link #resolveGenres(List)}.
+     */
     void updateFilmGenres(int filmId, List<Genre> genres);
 }
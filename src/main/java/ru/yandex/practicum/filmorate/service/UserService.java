@@ -1,9 +1,16 @@
 package ru.yandex.practicum.filmorate.service;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserImportResult;
 
 public interface UserService {
 
@@ -11,15 +18,49 @@ public interface UserService {
 
     User updateUser(User user);
 
+    /**
+     * Импортирует пользователей по мере чтения: найденные по логину перезаписываются, остальные создаются.
+     * Некорректные пользователи пропускаются и попадают в отчёт. Если строка не разбирается, импорт
+     * останавливается: прочитанные до неё пользователи сохраняются, а в отчёте выставляется {@code aborted}
+     * и ошибка с номером строки.
+     */
+    UserImportResult importUsers(Iterator<User> users);
+
     Optional<User> getUserById(int id);
 
+    /**
+     * ETag пользователя, вычисляется без обращения к БД.
+     */
+    String getUserETag(int id);
+
+    Set<Integer> getExistingUserIds(Collection<Integer> ids);
+
     List<User> getAllUsers();
 
+    List<User> getUsersPage(int afterId, int limit);
+
+    /**
+     * Пользователи только с запрошенными полями (имена как в JSON пользователя) и всегда с {@code id}.
+     * Без {@code limit} - первая страница после {@code afterId} наибольшего допустимого размера.
+     */
+    List<Map<String, Object>> getUsersFields(Set<String> fields, int afterId, Integer limit);
+
+    void streamAllUsers(Consumer<User> consumer);
+
+    void streamAllFriendships(Consumer<Friendship> consumer);
+
     void addFriend(int userId, int friendId);
 
     void removeFriend(int userId, int friendId);
 
     List<User> getFriends(int userId);
 
+    /**
+     * ETag списка друзей: меняется при изменении графа дружбы или любого пользователя.
+     */
+    String getFriendsETag(int userId);
+
     List<User> getCommonFriends(int userId, int otherUserId);
+
+    List<User> getRecommendations(int userId, int limit);
 }
@@ -2,69 +2,145 @@ package ru.yandex.practicum.filmorate.service.impl;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.TooManyRequestsException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmImportResult;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.ImportError;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
+import ru.yandex.practicum.filmorate.recommendation.FilmRecommendationEngine;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.GenreService;
 import ru.yandex.practicum.filmorate.service.MpaService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.cache.PopularFilmsCache;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FilmServiceImpl implements FilmService {
     private static final LocalDate CINEMA_BIRTHDAY = LocalDate.of(1895, 12, 28);
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_LIKES_BATCH_SIZE = 10_000;
+    private static final int MAX_RECOMMENDATIONS = 100;
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_IMPORT_ERRORS = 100;
 
     private final FilmStorage filmStorage;
     private final GenreService genreService;
     private final MpaService mpaService;
     private final UserService userService;
+    private final FilmRecommendationEngine filmRecommendationEngine;
+    private final EntityVersions entityVersions;
+    private final PopularFilmsCache popularFilmsCache;
+    private final LikeWriteBehindQueue likeWriteBehindQueue;
+    private final Validator validator;
+    private final TransactionOperations transactionOperations;
 
     @Override
     public Film createFilm(Film film) {
         validateFilm(film);
         validateMpaExists(film.getMpa().getId());
-
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            validateGenresExist(film.getGenres());
-        }
+        List<Genre> genres = genreService.resolveGenres(film.getGenres());
 
         Film createdFilm = filmStorage.create(film);
 
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            genreService.addGenresToFilm(createdFilm.getId(), film.getGenres());
-            createdFilm.setGenres(genreService.getFilmGenres(createdFilm.getId()));
+        if (!genres.isEmpty()) {
+            genreService.addGenresToFilm(createdFilm.getId(), genres);
+            createdFilm.setGenres(genres);
         }
+        entityVersions.filmChanged(createdFilm.getId());
+        popularFilmsCache.invalidate();
 
         log.info("Film created: {}", createdFilm);
         return createdFilm;
     }
 
+    /**
+     * MPA и жанры проверяются по кэшу справочников, фильмы и их жанры пишутся пакетами
+     * по {@value #IMPORT_CHUNK_SIZE}, каждый пакет - в своей транзакции. Если элемент потока не разбирается,
+     * импорт останавливается, уже прочитанные фильмы сохраняются, а ошибка попадает в результат.
+     */
+    @Override
+    public FilmImportResult importFilms(Iterator<Film> films) {
+        FilmImportResult result = new FilmImportResult();
+        List<Film> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        List<List<Genre>> chunkGenres = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        int index = 0;
+        while (true) {
+            Film film;
+            try {
+                if (!films.hasNext()) {
+                    break;
+                }
+                film = films.next();
+            } catch (ValidationException e) {
+                result.setAborted(true);
+                result.getErrors().add(new ImportError(index, e.getMessage()));
+                break;
+            }
+            List<Genre> genres = new ArrayList<>();
+            String error = validateImportedFilm(film, genres);
+            if (error != null) {
+                result.setRejected(result.getRejected() + 1);
+                if (result.getErrors().size() < MAX_REPORTED_IMPORT_ERRORS) {
+                    result.getErrors().add(new ImportError(index, error));
+                }
+            } else {
+                chunk.add(film);
+                chunkGenres.add(genres);
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    saveImportedChunk(chunk, chunkGenres, result);
+                }
+            }
+            index++;
+        }
+        saveImportedChunk(chunk, chunkGenres, result);
+
+        log.info("Imported {} films, rejected {}", result.getImported(), result.getRejected());
+        return result;
+    }
+
+    /**
+     * Существование фильма проверяется по числу обновлённых строк в {@link FilmStorage#update(Film)}.
+     */
     @Override
     public Film updateFilm(Film film) {
         validateFilm(film);
         validateMpaExists(film.getMpa().getId());
-        validateFilmExists(film.getId());
-
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            validateGenresExist(film.getGenres());
-        }
+        List<Genre> genres = genreService.resolveGenres(film.getGenres());
 
         Film updatedFilm = filmStorage.update(film);
 
-        genreService.updateFilmGenres(film.getId(), film.getGenres());
-        updatedFilm.setGenres(genreService.getFilmGenres(film.getId()));
+        genreService.updateFilmGenres(film.getId(), genres);
+        updatedFilm.setGenres(genres);
+        entityVersions.filmChanged(updatedFilm.getId());
+        popularFilmsCache.evictAll();
 
         log.info("Film updated: {}", updatedFilm);
         return updatedFilm;
@@ -72,40 +148,74 @@ public class FilmServiceImpl implements FilmService {
 
     @Override
     public Optional<Film> getFilmById(int id) {
-        Optional<Film> filmOpt = filmStorage.findFilmById(id);
-
-        if (filmOpt.isPresent()) {
-            Film film = filmOpt.get();
-            film.setGenres(genreService.getFilmGenres(id));
-            return Optional.of(film);
-        }
+        return filmStorage.findFilmWithGenresById(id);
+    }
 
-        return Optional.empty();
+    @Override
+    public String getFilmETag(int id) {
+        return entityVersions.etag("film-" + id, entityVersions.getFilmVersion(id));
     }
 
     @Override
     public List<Film> getAllFilms() {
         List<Film> films = filmStorage.findAll();
+        fillGenres(films);
+        return films;
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        validatePage(afterId, limit);
+        List<Film> films = filmStorage.findPage(afterId, limit);
+        fillGenres(films);
+        return films;
+    }
+
+    /**
+     * Жанры загружаются одним запросом на страницу и только если запрошены. Без {@code limit} отдаётся
+     * страница наибольшего размера, а не вся таблица.
+     */
+    @Override
+    public List<Map<String, Object>> getFilmsFields(Set<String> fields, int afterId, Integer limit) {
+        Set<FilmField> filmFields = EnumSet.noneOf(FilmField.class);
+        for (String key : fields) {
+            filmFields.add(FilmField.fromKey(key.trim())
+                    .orElseThrow(() -> new ValidationException("Unknown film field: " + key)));
+        }
+        int pageSize = limit == null ? MAX_PAGE_SIZE : limit;
+        validatePage(afterId, pageSize);
+        List<Map<String, Object>> films = filmStorage.findPageFields(afterId, pageSize, filmFields);
 
-        if (!films.isEmpty()) {
+        if (filmFields.contains(FilmField.GENRES) && !films.isEmpty()) {
             List<Integer> filmIds = films.stream()
-                    .map(Film::getId)
+                    .map(film -> (Integer) film.get(FilmField.ID.getKey()))
                     .toList();
-
             Map<Integer, List<Genre>> filmGenres = genreService.getGenresForFilms(filmIds);
-
-            films.forEach(film -> film.setGenres(filmGenres.getOrDefault(film.getId(), new ArrayList<>())));
+            films.forEach(film -> film.put(FilmField.GENRES.getKey(),
+                    filmGenres.getOrDefault((Integer) film.get(FilmField.ID.getKey()), new ArrayList<>())));
         }
-
         return films;
     }
 
+    @Override
+    public void streamAllFilms(Consumer<Film> consumer) {
+        filmStorage.streamAllWithGenres(consumer);
+    }
+
     @Override
     public void addLike(int filmId, int userId) {
         validateFilmExists(filmId);
         validateUserExists(userId);
 
-        filmStorage.addLike(filmId, userId);
+        if (likeWriteBehindQueue.isEnabled()) {
+            enqueueLike(new LikeOperation(filmId, userId, LikeOperation.Type.LIKE));
+            return;
+        }
+        if (!filmStorage.addLike(filmId, userId)) {
+            log.debug("User {} already liked film {}", userId, filmId);
+            return;
+        }
+        popularFilmsCache.invalidate();
         log.info("User {} liked film {}", userId, filmId);
     }
 
@@ -114,35 +224,195 @@ public class FilmServiceImpl implements FilmService {
         validateFilmExists(filmId);
         validateUserExists(userId);
 
-        filmStorage.removeLike(filmId, userId);
+        if (likeWriteBehindQueue.isEnabled()) {
+            enqueueLike(new LikeOperation(filmId, userId, LikeOperation.Type.UNLIKE));
+            return;
+        }
+        if (!filmStorage.removeLike(filmId, userId)) {
+            log.debug("User {} has no like on film {}", userId, filmId);
+            return;
+        }
+        popularFilmsCache.invalidate();
         log.info("User {} removed like from film {}", userId, filmId);
     }
 
+    @Override
+    public List<LikeOperationResult> applyLikes(List<LikeOperation> operations) {
+        if (operations.size() > MAX_LIKES_BATCH_SIZE) {
+            throw new ValidationException("Batch cannot contain more than " + MAX_LIKES_BATCH_SIZE + " operations");
+        }
+
+        Set<Integer> existingFilms = filmStorage.findExistingIds(operations.stream()
+                .filter(Objects::nonNull)
+                .map(LikeOperation::getFilmId)
+                .collect(Collectors.toSet()));
+        Set<Integer> existingUsers = userService.getExistingUserIds(operations.stream()
+                .filter(Objects::nonNull)
+                .map(LikeOperation::getUserId)
+                .collect(Collectors.toSet()));
+
+        List<LikeOperationResult> results = new ArrayList<>(operations.size());
+        List<LikeOperation> validOperations = new ArrayList<>();
+        List<LikeOperationResult> validResults = new ArrayList<>();
+        for (LikeOperation operation : operations) {
+            if (operation == null) {
+                results.add(new LikeOperationResult(0, 0, null, LikeOperationResult.Status.INVALID));
+                continue;
+            }
+            LikeOperationResult result = new LikeOperationResult(
+                    operation.getFilmId(), operation.getUserId(), operation.getOp(), null);
+            if (operation.getOp() == null) {
+                result.setStatus(LikeOperationResult.Status.INVALID);
+            } else if (!existingFilms.contains(operation.getFilmId())) {
+                result.setStatus(LikeOperationResult.Status.FILM_NOT_FOUND);
+            } else if (!existingUsers.contains(operation.getUserId())) {
+                result.setStatus(LikeOperationResult.Status.USER_NOT_FOUND);
+            } else {
+                validOperations.add(operation);
+                validResults.add(result);
+            }
+            results.add(result);
+        }
+
+        if (!validOperations.isEmpty()) {
+            boolean[] changed = filmStorage.applyLikes(validOperations);
+            for (int i = 0; i < changed.length; i++) {
+                validResults.get(i).setStatus(changed[i]
+                        ? LikeOperationResult.Status.APPLIED
+                        : LikeOperationResult.Status.UNCHANGED);
+            }
+            popularFilmsCache.invalidate();
+        }
+
+        log.info("Processed batch of {} like operations, {} valid", operations.size(), validOperations.size());
+        return results;
+    }
+
     @Override
     public List<Film> getPopularFilms(int count) {
-        List<Film> films = filmStorage.getMostPopularFilms(count);
+        return popularFilmsCache.get(count, this::loadPopularFilms);
+    }
 
-        if (!films.isEmpty()) {
-            List<Integer> filmIds = films.stream()
-                    .map(Film::getId)
-                    .toList();
+    @Override
+    public String getPopularFilmsETag(int count) {
+        return entityVersions.etag("popular-" + count, popularFilmsCache.getVersion(count));
+    }
 
-            Map<Integer, List<Genre>> filmGenres = genreService.getGenresForFilms(filmIds);
+    @Override
+    public List<Film> getRecommendedFilms(int userId, int limit) {
+        if (limit < 1 || limit > MAX_RECOMMENDATIONS) {
+            throw new ValidationException("limit must be between 1 and " + MAX_RECOMMENDATIONS);
+        }
+        validateUserExists(userId);
 
-            films.forEach(film -> film.setGenres(filmGenres.getOrDefault(film.getId(), new ArrayList<>())));
+        int[] filmIds = filmRecommendationEngine.recommend(userId, limit);
+        if (filmIds.length == 0) {
+            return new ArrayList<>();
         }
+        return filmStorage.findFilmsWithGenresByIds(Arrays.stream(filmIds).boxed().toList());
+    }
 
+    /**
+     * Лайк станет виден в популярных фильмах после ближайшей записи очереди.
+     */
+    private void enqueueLike(LikeOperation operation) {
+        if (!likeWriteBehindQueue.submit(operation)) {
+            throw new TooManyRequestsException("Like queue is full, retry later");
+        }
+        log.debug("Queued {} from user {} for film {}", operation.getOp(), operation.getUserId(),
+                operation.getFilmId());
+    }
+
+    private List<Film> loadPopularFilms(int count) {
+        List<Film> films = filmStorage.getMostPopularFilms(count);
+        fillGenres(films);
         return films;
     }
 
+    private void fillGenres(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+
+        List<Integer> filmIds = films.stream()
+                .map(Film::getId)
+                .toList();
+
+        Map<Integer, List<Genre>> filmGenres = genreService.getGenresForFilms(filmIds);
+
+        films.forEach(film -> film.setGenres(filmGenres.getOrDefault(film.getId(), new ArrayList<>())));
+    }
+
+    private void saveImportedChunk(List<Film> chunk, List<List<Genre>> chunkGenres, FilmImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionOperations.executeWithoutResult(status -> {
+                filmStorage.createAll(chunk);
+                Map<Integer, List<Genre>> genresByFilm = new HashMap<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    Film film = chunk.get(i);
+                    film.setGenres(chunkGenres.get(i));
+                    if (!film.getGenres().isEmpty()) {
+                        genresByFilm.put(film.getId(), film.getGenres());
+                    }
+                }
+                genreService.addGenresToFilms(genresByFilm);
+            });
+            chunk.forEach(film -> entityVersions.filmChanged(film.getId()));
+            popularFilmsCache.invalidate();
+            result.setImported(result.getImported() + chunk.size());
+        } finally {
+            chunk.clear();
+            chunkGenres.clear();
+        }
+        log.info("Film import progress: {} imported, {} rejected", result.getImported(), result.getRejected());
+    }
+
+    /**
+     * Возвращает причину отказа или null, найденные жанры складывает в {@code genres}.
+     */
+    private String validateImportedFilm(Film film, List<Genre> genres) {
+        if (film == null) {
+            return "Film cannot be null";
+        }
+        Set<ConstraintViolation<Film>> violations = validator.validate(film);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        if (film.getReleaseDate().isBefore(CINEMA_BIRTHDAY)) {
+            return "Release date cannot be earlier than " + CINEMA_BIRTHDAY;
+        }
+        if (mpaService.getMpaById(film.getMpa().getId()).isEmpty()) {
+            return "MPA with ID " + film.getMpa().getId() + " not found";
+        }
+        try {
+            genres.addAll(genreService.resolveGenres(film.getGenres()));
+        } catch (NotFoundException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
     private void validateFilm(Film film) {
         if (film.getReleaseDate().isBefore(CINEMA_BIRTHDAY)) {
             throw new ValidationException("Release date cannot be earlier than " + CINEMA_BIRTHDAY);
         }
     }
 
+    private void validatePage(int afterId, int limit) {
+        if (afterId < 0) {
+            throw new ValidationException("after_id cannot be negative");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
     private void validateFilmExists(int filmId) {
-        if (filmStorage.findFilmById(filmId).isEmpty()) {
+        if (!filmStorage.existsById(filmId)) {
             throw new NotFoundException("Film with ID " + filmId + " not found");
         }
     }
@@ -158,21 +428,4 @@ public class FilmServiceImpl implements FilmService {
             throw new NotFoundException("MPA with ID " + mpaId + " not found");
         }
     }
-
-    private void validateGenresExist(List<Genre> genres) {
-        if (genres == null || genres.isEmpty()) {
-            return;
-        }
-
-        List<Integer> genreIds = genres.stream()
-                .map(Genre::getId)
-                .distinct()
-                .toList();
-
-        for (Integer genreId : genreIds) {
-            if (genreService.getGenreById(genreId).isEmpty()) {
-                throw new NotFoundException("Genre with ID " + genreId + " not found");
-            }
-        }
-    }
 }
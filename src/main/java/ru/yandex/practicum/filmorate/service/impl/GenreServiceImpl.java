@@ -1,8 +1,12 @@
 package ru.yandex.practicum.filmorate.service.impl;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 
@@ -39,29 +43,40 @@ public class GenreServiceImpl implements GenreService {
         return genreStorage.getGenresForFilms(filmIds);
     }
 
+    @Override
+    public List<Genre> resolveGenres(List<Genre> genres) {
+        if (genres == null || genres.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Integer> genreIds = genres.stream()
+                .map(Genre::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        List<Genre> found = genreStorage.findGenresByIds(genreIds);
+        if (found.size() != genreIds.size()) {
+            found.forEach(genre -> genreIds.remove(genre.getId()));
+            throw new NotFoundException("Genre with ID " + genreIds.iterator().next() + " not found");
+        }
+        return found;
+    }
+
     @Override
     public void addGenresToFilm(int filmId, List<Genre> genres) {
-        validateGenresExist(genres);
         genreStorage.addFilmGenres(filmId, genres);
         log.info("Added genres to film {}: {}", filmId, genres);
     }
 
     @Override
-    public void updateFilmGenres(int filmId, List<Genre> genres) {
-        validateGenresExist(genres);
-        genreStorage.updateFilmGenres(filmId, genres);
-        log.info("Updated genres for film {}: {}", filmId, genres);
-    }
-
-    private void validateGenresExist(List<Genre> genres) {
-        if (genres == null || genres.isEmpty()) {
+    public void addGenresToFilms(Map<Integer, List<Genre>> genresByFilm) {
+        if (genresByFilm.isEmpty()) {
             return;
         }
+        genreStorage.addGenresForFilms(genresByFilm);
+    }
 
-        for (Genre genre : genres) {
-            if (genreStorage.findGenreById(genre.getId()).isEmpty()) {
-                throw new NotFoundException("Genre with ID " + genre.getId() + " not found");
-            }
-        }
+    @Override
+    public void updateFilmGenres(int filmId, List<Genre> genres) {
+        genreStorage.updateFilmGenres(filmId, genres);
+        log.info("Updated genres for film {}: {}", filmId, genres);
     }
 }
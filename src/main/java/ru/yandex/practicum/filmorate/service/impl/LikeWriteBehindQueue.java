@@ -0,0 +1,241 @@
+package ru.yandex.practicum.filmorate.service.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.cache.PopularFilmsCache;
+
+/**
+ * Отложенная запись лайков. Операции складываются в ограниченную очередь, фоновый поток раз в интервал
+ * забирает их, оставляет для каждой пары (фильм, пользователь) только последнюю операцию и записывает
+ * пакетом через {@link FilmStorage#applyLikes(List)}. Лайк и отмена лайка в одном пакете схлопываются
+ * в одну операцию, которая идемпотентна в хранилище. Включается {@code filmorate.likes.write-behind.enabled}.
+ * <p>
+ * Пакет, который не удалось записать, не выбрасывается: он повторяется с растущей задержкой до
+ * {@code filmorate.likes.write-behind.max-retry-delay-ms}, а новые операции до успешной записи
+ * отклоняются {@link ServiceUnavailableException}. При остановке приложения приём операций прекращается,
+ * затем очередь дописывается до конца.
+ */
+@Component
+@Slf4j
+public class LikeWriteBehindQueue {
+    private static final int CLOSE_ATTEMPTS = 3;
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long flushIntervalMs;
+    private final long maxRetryDelayMs;
+    private final BlockingQueue<LikeOperation> queue;
+    private final FilmStorage filmStorage;
+    private final PopularFilmsCache popularFilmsCache;
+    private final ScheduledExecutorService writer;
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+    private final Counter accepted;
+    private final Counter rejected;
+    private final Counter coalesced;
+    private final Counter retried;
+    private final Counter failed;
+    private final Timer flushTimer;
+
+    private boolean closed;
+    private volatile boolean failing;
+    private List<LikeOperation> retryBatch;
+    private long retryDelayMs;
+    private long nextAttemptNanos;
+
+    public LikeWriteBehindQueue(FilmStorage filmStorage, PopularFilmsCache popularFilmsCache,
+                                MeterRegistry meterRegistry,
+                                @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity,
+                                @Value("${filmorate.likes.write-behind.flush-interval-ms:50}") long flushIntervalMs,
+                                @Value("${filmorate.likes.write-behind.max-batch-size:1000}") int maxBatchSize,
+                                @Value("${filmorate.likes.write-behind.max-retry-delay-ms:5000}")
+                                long maxRetryDelayMs) {
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxRetryDelayMs = maxRetryDelayMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.filmStorage = filmStorage;
+        this.popularFilmsCache = popularFilmsCache;
+        this.accepted = operations(meterRegistry, "accepted");
+        this.rejected = operations(meterRegistry, "rejected");
+        this.coalesced = operations(meterRegistry, "coalesced");
+        this.retried = operations(meterRegistry, "retried");
+        this.failed = operations(meterRegistry, "failed");
+        this.flushTimer = Timer.builder("filmorate.likes.write-behind.flush")
+                .description("Time to write a batch of queued like operations")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.likes.write-behind.queue.size", queue, BlockingQueue::size)
+                .description("Like operations waiting to be written")
+                .register(meterRegistry);
+
+        if (enabled) {
+            writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "like-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+            log.info("Like write-behind enabled: capacity {}, flush every {} ms", capacity, flushIntervalMs);
+        } else {
+            writer = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит операцию в очередь. Возвращает false, если очередь заполнена. Бросает
+     * {@link ServiceUnavailableException}, если хранилище не принимает запись или очередь остановлена.
+     */
+    public boolean submit(LikeOperation operation) {
+        submitLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new ServiceUnavailableException("Like queue is shutting down, retry later");
+            }
+            if (failing) {
+                rejected.increment();
+                throw new ServiceUnavailableException("Likes cannot be saved right now, retry later");
+            }
+            if (!queue.offer(operation)) {
+                rejected.increment();
+                return false;
+            }
+            accepted.increment();
+            return true;
+        } finally {
+            submitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Записывает всё, что накопилось в очереди к моменту вызова. Возвращает false, если запись не удалась
+     * и пакет оставлен для повтора.
+     */
+    public synchronized boolean flush() {
+        if (retryBatch != null) {
+            if (!write(retryBatch)) {
+                return false;
+            }
+            retryBatch = null;
+        }
+        List<LikeOperation> drained = new ArrayList<>();
+        while (queue.drainTo(drained, maxBatchSize) > 0) {
+            Map<Long, LikeOperation> latest = new LinkedHashMap<>();
+            for (LikeOperation operation : drained) {
+                long key = ((long) operation.getFilmId() << 32) | (operation.getUserId() & 0xFFFFFFFFL);
+                latest.remove(key);
+                latest.put(key, operation);
+            }
+            coalesced.increment(drained.size() - latest.size());
+
+            List<LikeOperation> batch = new ArrayList<>(latest.values());
+            if (!write(batch)) {
+                retryBatch = batch;
+                return false;
+            }
+            drained.clear();
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        submitLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+        writer.shutdown();
+        if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Like writer did not stop in time");
+        }
+        for (int attempt = 1; attempt <= CLOSE_ATTEMPTS; attempt++) {
+            if (flush()) {
+                log.info("Like write-behind queue drained");
+                return;
+            }
+            if (attempt < CLOSE_ATTEMPTS) {
+                TimeUnit.MILLISECONDS.sleep(retryDelayMs);
+            }
+        }
+        discardPending();
+    }
+
+    private boolean write(List<LikeOperation> batch) {
+        try {
+            flushTimer.record(() -> filmStorage.applyLikes(batch));
+        } catch (RuntimeException e) {
+            retried.increment(batch.size());
+            retryDelayMs = retryDelayMs == 0 ? flushIntervalMs : Math.min(retryDelayMs * 2, maxRetryDelayMs);
+            nextAttemptNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDelayMs);
+            failing = true;
+            log.error("Failed to write {} queued like operations, retrying in {} ms", batch.size(), retryDelayMs, e);
+            return false;
+        }
+        if (failing) {
+            log.info("Like write-behind recovered");
+        }
+        failing = false;
+        retryDelayMs = 0;
+        popularFilmsCache.invalidate();
+        return true;
+    }
+
+    private synchronized void discardPending() {
+        int lost = queue.size() + (retryBatch == null ? 0 : retryBatch.size());
+        queue.clear();
+        retryBatch = null;
+        failed.increment(lost);
+        log.error("Like write-behind stopped with {} unwritten operations", lost);
+    }
+
+    private void flushSafely() {
+        try {
+            synchronized (this) {
+                if (failing && System.nanoTime() < nextAttemptNanos) {
+                    return;
+                }
+                flush();
+            }
+        } catch (RuntimeException e) {
+            log.error("Like write-behind flush failed", e);
+        }
+    }
+
+    private static Counter operations(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("filmorate.likes.write-behind.operations")
+                .description("Queued like operations by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -1,24 +1,49 @@
 package ru.yandex.practicum.filmorate.service.impl;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.springframework.stereotype.Service;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.ImportError;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.model.UserImportResult;
+import ru.yandex.practicum.filmorate.recommendation.FriendRecommendationEngine;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class UserServiceImpl implements UserService {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_RECOMMENDATIONS = 100;
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_IMPORT_ERRORS = 100;
+
     private final UserStorage userStorage;
+    private final FriendRecommendationEngine friendRecommendationEngine;
+    private final EntityVersions entityVersions;
+    private final Validator validator;
 
     @Override
     public User createUser(User user) {
@@ -26,6 +51,7 @@ public class UserServiceImpl implements UserService {
         setNameIfEmpty(user);
 
         User createdUser = userStorage.create(user);
+        entityVersions.userChanged(createdUser.getId());
 
         log.info("User created: {}", createdUser);
         return createdUser;
@@ -38,27 +64,114 @@ public class UserServiceImpl implements UserService {
         setNameIfEmpty(user);
 
         User updatedUser = userStorage.update(user);
+        entityVersions.userChanged(updatedUser.getId());
 
         log.info("User updated: {}", updatedUser);
         return updatedUser;
     }
 
+    /**
+     * Пользователи пишутся пакетами по {@value #IMPORT_CHUNK_SIZE}, каждый пакет - в своей транзакции.
+     * Повтор логина внутри пакета заменяет предыдущую строку и считается обновлением.
+     */
+    @Override
+    public UserImportResult importUsers(Iterator<User> users) {
+        UserImportResult result = new UserImportResult();
+        Map<String, User> chunk = new LinkedHashMap<>();
+        int index = 0;
+        while (true) {
+            User user;
+            try {
+                if (!users.hasNext()) {
+                    break;
+                }
+                user = users.next();
+            } catch (ValidationException e) {
+                result.setAborted(true);
+                result.getErrors().add(new ImportError(index, e.getMessage()));
+                break;
+            }
+            String error = validateImportedUser(user);
+            if (error != null) {
+                result.setRejected(result.getRejected() + 1);
+                if (result.getErrors().size() < MAX_REPORTED_IMPORT_ERRORS) {
+                    result.getErrors().add(new ImportError(index, error));
+                }
+            } else {
+                setNameIfEmpty(user);
+                if (chunk.put(user.getLogin(), user) != null) {
+                    result.setUpdated(result.getUpdated() + 1);
+                }
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    saveImportedChunk(chunk, result);
+                }
+            }
+            index++;
+        }
+        saveImportedChunk(chunk, result);
+
+        log.info("Imported users: {} created, {} updated, {} rejected",
+                result.getCreated(), result.getUpdated(), result.getRejected());
+        return result;
+    }
+
     @Override
     public Optional<User> getUserById(int id) {
         return userStorage.findUserById(id);
     }
 
+    @Override
+    public String getUserETag(int id) {
+        return entityVersions.etag("user-" + id, entityVersions.getUserVersion(id));
+    }
+
+    @Override
+    public Set<Integer> getExistingUserIds(Collection<Integer> ids) {
+        return userStorage.findExistingIds(ids);
+    }
+
     @Override
     public List<User> getAllUsers() {
         return userStorage.findAll();
     }
 
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        validatePage(afterId, limit);
+        return userStorage.findPage(afterId, limit);
+    }
+
+    @Override
+    public List<Map<String, Object>> getUsersFields(Set<String> fields, int afterId, Integer limit) {
+        Set<UserField> userFields = EnumSet.noneOf(UserField.class);
+        for (String key : fields) {
+            userFields.add(UserField.fromKey(key.trim())
+                    .orElseThrow(() -> new ValidationException("Unknown user field: " + key)));
+        }
+        int pageSize = limit == null ? MAX_PAGE_SIZE : limit;
+        validatePage(afterId, pageSize);
+        return userStorage.findPageFields(afterId, pageSize, userFields);
+    }
+
+    @Override
+    public void streamAllUsers(Consumer<User> consumer) {
+        userStorage.streamAll(consumer);
+    }
+
+    @Override
+    public void streamAllFriendships(Consumer<Friendship> consumer) {
+        userStorage.streamFriendships(consumer);
+    }
+
     @Override
     public void addFriend(int userId, int friendId) {
         validateUserExists(userId);
         validateUserExists(friendId);
 
-        userStorage.addFriend(userId, friendId);
+        if (!userStorage.addFriend(userId, friendId)) {
+            log.debug("User {} is already friends with {}", userId, friendId);
+            return;
+        }
         log.info("User {} added friend {}", userId, friendId);
     }
 
@@ -67,7 +180,10 @@ public class UserServiceImpl implements UserService {
         validateUserExists(userId);
         validateUserExists(friendId);
 
-        userStorage.removeFriend(userId, friendId);
+        if (!userStorage.removeFriend(userId, friendId)) {
+            log.debug("User {} is not friends with {}", userId, friendId);
+            return;
+        }
         log.info("User {} removed friend {}", userId, friendId);
     }
 
@@ -78,6 +194,12 @@ public class UserServiceImpl implements UserService {
         return userStorage.getFriends(userId);
     }
 
+    @Override
+    public String getFriendsETag(int userId) {
+        return entityVersions.etag("friends-" + userId,
+                userStorage.getFriendGraphVersion(), entityVersions.getUsersVersion());
+    }
+
     @Override
     public List<User> getCommonFriends(int userId, int otherUserId) {
         validateUserExists(userId);
@@ -86,6 +208,26 @@ public class UserServiceImpl implements UserService {
         return userStorage.getCommonFriends(userId, otherUserId);
     }
 
+    @Override
+    public List<User> getRecommendations(int userId, int limit) {
+        if (limit < 1 || limit > MAX_RECOMMENDATIONS) {
+            throw new ValidationException("limit must be between 1 and " + MAX_RECOMMENDATIONS);
+        }
+        validateUserExists(userId);
+
+        int[] userIds = friendRecommendationEngine.recommend(userId, limit);
+        return userStorage.findUsersByIds(Arrays.stream(userIds).boxed().toList());
+    }
+
+    private void validatePage(int afterId, int limit) {
+        if (afterId < 0) {
+            throw new ValidationException("after_id cannot be negative");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
     private void validateUser(User user) {
         if (user.getLogin().contains(" ")) {
             throw new ValidationException("Login cannot contain spaces");
@@ -96,6 +238,43 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    private void saveImportedChunk(Map<String, User> chunk, UserImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<User> users = new ArrayList<>(chunk.values());
+            boolean[] created = userStorage.upsertAllByLogin(users);
+            for (int i = 0; i < users.size(); i++) {
+                if (created[i]) {
+                    result.setCreated(result.getCreated() + 1);
+                } else {
+                    result.setUpdated(result.getUpdated() + 1);
+                }
+                entityVersions.userChanged(users.get(i).getId());
+            }
+        } finally {
+            chunk.clear();
+        }
+        log.info("User import progress: {} created, {} updated, {} rejected",
+                result.getCreated(), result.getUpdated(), result.getRejected());
+    }
+
+    /**
+     * Возвращает причину отказа или null.
+     */
+    private String validateImportedUser(User user) {
+        if (user == null) {
+            return "User cannot be null";
+        }
+        Set<ConstraintViolation<User>> violations = validator.validate(user);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        return null;
+    }
+
     private void validateUserExists(int userId) {
         if (userStorage.findUserById(userId).isEmpty()) {
             throw new NotFoundException("User with ID " + userId + " not found");
@@ -1,22 +1,60 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 
 public interface FilmStorage {
     Film create(Film film);
 
+    /**
+     * Пакетное создание фильмов без жанров, ID назначаются переданным объектам.
+     */
+    List<Film> createAll(List<Film> films);
+
     Film update(Film film);
 
     Optional<Film> findFilmById(int id);
 
+    Optional<Film> findFilmWithGenresById(int id);
+
+    boolean existsById(int id);
+
+    Set<Integer> findExistingIds(Collection<Integer> ids);
+
+    List<Film> findFilmsWithGenresByIds(List<Integer> ids);
+
     List<Film> findAll();
 
-    void addLike(int filmId, int userId);
+    List<Film> findPage(int afterId, int limit);
+
+    /**
+     * Страница как в {@link #findPage(int, int)}, но только с запрошенными полями: ключи - имена полей в JSON,
+     * {@code id} есть всегда. Жанры не заполняются.
+     */
+    List<Map<String, Object>> findPageFields(int afterId, int limit, Set<FilmField> fields);
+
+    void streamAllWithGenres(Consumer<Film> consumer);
+
+    /**
+     * Идемпотентно: повторный лайк не меняет состояние. Возвращает, изменилось ли состояние.
+     */
+    boolean addLike(int filmId, int userId);
+
+    boolean removeLike(int filmId, int userId);
 
-    void removeLike(int filmId, int userId);
+    /**
+     * Применяет операции по порядку в одной транзакции.
+     * Возвращает для каждой операции, изменила ли она состояние.
+     */
+    boolean[] applyLikes(List<LikeOperation> operations);
 
     List<Film> getMostPopularFilms(int count);
 }
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -11,11 +12,18 @@ public interface GenreStorage {
 
     Optional<Genre> findGenreById(int id);
 
+    List<Genre> findGenresByIds(Collection<Integer> ids);
+
     List<Genre> getFilmGenres(int filmId);
 
     Map<Integer, List<Genre>> getGenresForFilms(List<Integer> filmIds);
 
     void addFilmGenres(int filmId, List<Genre> genres);
 
+    /**
+     * Жанры для нескольких новых фильмов одним пакетом.
+     */
+    void addGenresForFilms(Map<Integer, List<Genre>> genresByFilm);
+
     void updateFilmGenres(int filmId, List<Genre> genres);
 }
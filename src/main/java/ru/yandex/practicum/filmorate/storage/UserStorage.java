@@ -1,24 +1,60 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
 
 public interface UserStorage {
     User create(User user);
 
     User update(User user);
 
+    /**
+     * Создаёт пользователей с новыми логинами и перезаписывает найденных по логину, проставляя всем ID.
+     * Логины в списке не повторяются. Возвращает для каждого пользователя, был ли он создан.
+     */
+    boolean[] upsertAllByLogin(List<User> users);
+
     Optional<User> findUserById(int id);
 
+    Set<Integer> findExistingIds(Collection<Integer> ids);
+
+    List<User> findUsersByIds(List<Integer> ids);
+
     List<User> findAll();
 
-    void addFriend(int userId, int friendId);
+    List<User> findPage(int afterId, int limit);
+
+    /**
+     * Страница как в {@link #findPage(int, int)}, но только с запрошенными полями: ключи - имена полей в JSON,
+     * {@code id} есть всегда.
+     */
+    List<Map<String, Object>> findPageFields(int afterId, int limit, Set<UserField> fields);
 
-    void removeFriend(int userId, int friendId);
+    void streamAll(Consumer<User> consumer);
+
+    void streamFriendships(Consumer<Friendship> consumer);
+
+    /**
+     * Идемпотентно: повторное добавление друга не меняет состояние. Возвращает, изменилось ли состояние.
+     */
+    boolean addFriend(int userId, int friendId);
+
+    boolean removeFriend(int userId, int friendId);
 
     List<User> getFriends(int userId);
 
     List<User> getCommonFriends(int userId, int otherUserId);
+
+    /**
+     * Версия графа дружбы, меняется при каждом добавлении и удалении друга.
+     */
+    long getFriendGraphVersion();
 }
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Версии фильмов и пользователей для условных HTTP-запросов (ETag / If-None-Match).
+ * Версия сущности меняется после создания и каждого успешного обновления, общая версия - после изменения любой
+ * сущности типа. Версия 0 бывает только у сущностей, загруженных из БД до старта, и у несуществующих ID, поэтому
+ * ETag ответа 404 не совпадёт с ETag сущности, созданной позже с тем же ID.
+ * Эпоха выбирается при старте, поэтому ETag, выданные до перезапуска, не совпадут с новыми.
+ */
+@Component
+public class EntityVersions {
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final AtomicLong filmsVersion = new AtomicLong();
+    private final AtomicLong usersVersion = new AtomicLong();
+    private final Map<Integer, Long> filmVersions = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> userVersions = new ConcurrentHashMap<>();
+
+    public void filmChanged(int filmId) {
+        filmVersions.put(filmId, filmsVersion.incrementAndGet());
+    }
+
+    public void userChanged(int userId) {
+        userVersions.put(userId, usersVersion.incrementAndGet());
+    }
+
+    public long getFilmVersion(int filmId) {
+        return filmVersions.getOrDefault(filmId, 0L);
+    }
+
+    public long getUserVersion(int userId) {
+        return userVersions.getOrDefault(userId, 0L);
+    }
+
+    public long getFilmsVersion() {
+        return filmsVersion.get();
+    }
+
+    public long getUsersVersion() {
+        return usersVersion.get();
+    }
+
+    /**
+     * Значение ETag вида {@code resource-epoch-v1-v2}. Версии нужно читать до загрузки данных:
+     * тогда при гонке с записью клиент получит более старый ETag и просто перезапросит ресурс.
+     */
+    public String etag(String resource, long... versions) {
+        StringBuilder etag = new StringBuilder(resource).append('-').append(epoch);
+        for (long version : versions) {
+            etag.append('-').append(version);
+        }
+        return etag.toString();
+    }
+}
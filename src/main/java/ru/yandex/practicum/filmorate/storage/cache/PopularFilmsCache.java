@@ -0,0 +1,189 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+/**
+ * Кэш ответов GET /films/popular по значению count.
+ * После лайка запись считается устаревшей, но отдаётся, пока её возраст меньше окна устаревания,
+ * поэтому серия лайков приводит не более чем к одной перестройке за окно.
+ * Изменение фильма и перестроение рейтинга сбрасывают кэш сразу, без учёта окна.
+ * Для каждого count одновременно выполняется не больше одной загрузки, остальные запросы ждут её результат.
+ * Каждый вызов получает собственные копии фильмов, поэтому изменения на стороне вызывающего не попадают в кэш.
+ */
+@Component
+public class PopularFilmsCache {
+    static final int MAX_ENTRIES = 64;
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Integer, Load> loads = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long minServableGeneration;
+    private final long maxStalenessNanos;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer rebuildTimer;
+
+    public PopularFilmsCache(MeterRegistry meterRegistry,
+                             @Value("${filmorate.popular-films.cache.max-staleness:1s}") Duration maxStaleness) {
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.rebuildTimer = Timer.builder("filmorate.popular.cache.rebuild")
+                .description("Time to rebuild a popular films response")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.popular.cache.hit.ratio", this, PopularFilmsCache::hitRatio)
+                .description("Share of popular films requests served from cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Копия списка из кэша либо результата {@code loader}.
+     */
+    public List<Film> get(int count, IntFunction<List<Film>> loader) {
+        Entry entry = entries.get(count);
+        if (entry != null && isServable(entry)) {
+            hits.increment();
+            return copyOf(entry.films());
+        }
+
+        misses.increment();
+        long entryGeneration = generation.get();
+        Load own = new Load(entryGeneration, new CompletableFuture<>());
+        Load running = loads.merge(count, own, (current, next) -> canJoin(current) ? current : next);
+        if (running != own) {
+            return copyOf(await(running.films()));
+        }
+
+        try {
+            long startedAt = System.nanoTime();
+            List<Film> films = List.copyOf(loader.apply(count));
+            rebuildTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+
+            if (entries.size() < MAX_ENTRIES || entries.containsKey(count)) {
+                entries.merge(count, new Entry(entryGeneration, startedAt, films),
+                        (current, rebuilt) -> current.generation() > rebuilt.generation() ? current : rebuilt);
+            }
+            own.films().complete(films);
+            return copyOf(films);
+        } catch (Throwable e) {
+            own.films().completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(count, own);
+        }
+    }
+
+    /**
+     * Версия ответа, который будет отдан для {@code count}: версия записи в кэше, если она ещё годна, иначе текущая.
+     */
+    public long getVersion(int count) {
+        Entry entry = entries.get(count);
+        return entry != null && isServable(entry) ? entry.generation() : generation.get();
+    }
+
+    /**
+     * Помечает записи устаревшими, они продолжают отдаваться в пределах окна устаревания.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Сбрасывает все записи независимо от окна устаревания.
+     */
+    public void evictAll() {
+        minServableGeneration = generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private boolean isServable(Entry entry) {
+        if (entry.generation() == generation.get()) {
+            return true;
+        }
+        return entry.generation() >= minServableGeneration
+                && System.nanoTime() - entry.builtAt() < maxStalenessNanos;
+    }
+
+    /**
+     * К загрузке можно присоединиться, если её результат был бы отдан из кэша, как только она завершится.
+     */
+    private boolean canJoin(Load load) {
+        if (load.generation() == generation.get()) {
+            return true;
+        }
+        return load.generation() >= minServableGeneration && maxStalenessNanos > 0;
+    }
+
+    private static List<Film> await(CompletableFuture<List<Film>> films) {
+        try {
+            return films.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static List<Film> copyOf(List<Film> films) {
+        List<Film> copies = new ArrayList<>(films.size());
+        for (Film film : films) {
+            copies.add(copy(film));
+        }
+        return copies;
+    }
+
+    private static Film copy(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setMpa(film.getMpa() == null ? null : new Mpa(film.getMpa().getId(), film.getMpa().getName()));
+        List<Genre> genres = new ArrayList<>(film.getGenres().size());
+        for (Genre genre : film.getGenres()) {
+            genres.add(new Genre(genre.getId(), genre.getName()));
+        }
+        copy.setGenres(genres);
+        return copy;
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("filmorate.popular.cache.requests")
+                .description("Popular films requests by cache result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Entry(long generation, long builtAt, List<Film> films) {
+    }
+
+    private record Load(long generation, CompletableFuture<List<Film>> films) {
+    }
+}
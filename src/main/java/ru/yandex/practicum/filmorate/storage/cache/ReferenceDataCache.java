@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Кэш справочных данных (жанры, рейтинги MPA) с доступом по ID через массив.
+ * Данные загружаются целиком при первом обращении и после {@link #invalidate()}. Наружу отдаются копии,
+ * полученные через {@code copier}, поэтому изменение выданного объекта не портит кэш. Попадания и промахи
+ * публикуются метриками {@code filmorate.reference.cache.gets} и {@code filmorate.reference.cache.size}.
+ */
+@Slf4j
+public class ReferenceDataCache<T> implements MeterBinder {
+    private final String name;
+    private final Supplier<List<T>> loader;
+    private final ToIntFunction<T> idExtractor;
+    private final UnaryOperator<T> copier;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Snapshot<T> snapshot;
+
+    public ReferenceDataCache(String name, Supplier<List<T>> loader, ToIntFunction<T> idExtractor,
+                              UnaryOperator<T> copier) {
+        this.name = name;
+        this.loader = loader;
+        this.idExtractor = idExtractor;
+        this.copier = copier;
+    }
+
+    public Optional<T> findById(int id) {
+        Object[] byId = getSnapshot().byId();
+        if (id < 0 || id >= byId.length || byId[id] == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        @SuppressWarnings("unchecked")
+        T value = (T) byId[id];
+        return Optional.of(copier.apply(value));
+    }
+
+    public boolean contains(int id) {
+        Object[] byId = getSnapshot().byId();
+        boolean found = id >= 0 && id < byId.length && byId[id] != null;
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    public List<T> findAll() {
+        return getSnapshot().values().stream().map(copier).toList();
+    }
+
+    public void invalidate() {
+        snapshot = null;
+        log.info("Reference data cache '{}' invalidated, stats: {}", name, getStats());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        gets(meterRegistry, "hit", hits);
+        gets(meterRegistry, "miss", misses);
+        Gauge.builder("filmorate.reference.cache.size", this, cache -> cache.getStats().size())
+                .description("Entries loaded into the reference data cache")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    public CacheStats getStats() {
+        Snapshot<T> current = snapshot;
+        return new CacheStats(name, hits.sum(), misses.sum(), current == null ? 0 : current.values().size());
+    }
+
+    private Snapshot<T> getSnapshot() {
+        Snapshot<T> current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Snapshot<T> load() {
+        List<T> values = List.copyOf(loader.get());
+        int maxId = values.stream().mapToInt(idExtractor).max().orElse(0);
+        Object[] byId = new Object[maxId + 1];
+        for (T value : values) {
+            byId[idExtractor.applyAsInt(value)] = value;
+        }
+        log.info("Reference data cache '{}' loaded with {} entries", name, values.size());
+        return new Snapshot<>(values, byId);
+    }
+
+    private void gets(MeterRegistry meterRegistry, String result, LongAdder count) {
+        FunctionCounter.builder("filmorate.reference.cache.gets", count, LongAdder::sum)
+                .description("Reference data cache lookups by result")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Snapshot<T>(List<T> values, Object[] byId) {
+    }
+
+    public record CacheStats(String name, long hits, long misses, int size) {
+    }
+}
@@ -1,33 +1,82 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
+import java.sql.BatchUpdateException;
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.mapper.FilmWithGenresExtractor;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
 
 @Repository
+@Profile("!memstore")
+@Timed(value = "filmorate.storage", description = "Storage method execution time")
 @Slf4j
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
+    private static final String SELECT_FILMS_WITH_GENRES =
+            "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, "
+                    + "f.mpa_id, m.name as mpa_name, g.genre_id, g.name as genre_name FROM films f "
+                    + "JOIN mpa m ON f.mpa_id = m.mpa_id "
+                    + "LEFT JOIN film_genres fg ON f.film_id = fg.film_id "
+                    + "LEFT JOIN genres g ON fg.genre_id = g.genre_id ";
+    private static final String INSERT_LIKE_IF_ABSENT =
+            "INSERT INTO likes (film_id, user_id) SELECT CAST(? AS INTEGER), CAST(? AS INTEGER) "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+    private static final String DUPLICATE_KEY_SQL_STATE = "23505";
 
     private final JdbcTemplate jdbcTemplate;
     private final FilmMapper filmMapper;
+    private final FilmWithGenresExtractor filmWithGenresExtractor;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final UserLikesIndex userLikesIndex;
+    private final ReadWriteLock likesWriteGate = new ReentrantReadWriteLock();
 
     @Override
+    @Transactional
     public Film create(Film film) {
+        holdLikesWriteGate();
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(connection -> {
             PreparedStatement ps = connection.prepareStatement(
@@ -41,10 +90,65 @@ public class FilmDbStorage implements FilmStorage {
             return ps;
         }, keyHolder);
         film.setId(Objects.requireNonNull(keyHolder.getKey()).intValue());
+        jdbcTemplate.update(
+                "INSERT INTO film_likes_count (film_id, likes_count) VALUES (?, 0)",
+                film.getId());
+        int filmId = film.getId();
+        afterCommit(() -> popularFilmsIndex.register(filmId));
         log.info("Film created with ID: {}", film.getId());
         return film;
     }
 
+    /**
+     * Один пакетный INSERT фильмов с получением всех сгенерированных ключей и один пакет строк film_likes_count.
+     */
+    @Override
+    @Transactional
+    public List<Film> createAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        holdLikesWriteGate();
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(
+                        "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)",
+                        new String[] { "film_id" }),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Film film = films.get(i);
+                        ps.setString(1, film.getName());
+                        ps.setString(2, film.getDescription());
+                        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+                        ps.setInt(4, film.getDuration());
+                        ps.setInt(5, film.getMpa().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> counterArgs = new ArrayList<>(films.size());
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).intValue());
+            counterArgs.add(new Object[] { film.getId() });
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO film_likes_count (film_id, likes_count) VALUES (?, 0)",
+                counterArgs);
+        List<Integer> filmIds = films.stream().map(Film::getId).toList();
+        afterCommit(() -> filmIds.forEach(popularFilmsIndex::register));
+        log.info("Created {} films", films.size());
+        return films;
+    }
+
     @Override
     public Film update(Film film) {
         int rowsUpdated = jdbcTemplate.update(
@@ -72,6 +176,63 @@ public class FilmDbStorage implements FilmStorage {
         return films.isEmpty() ? Optional.empty() : Optional.of(films.get(0));
     }
 
+    @Override
+    public Optional<Film> findFilmWithGenresById(int id) {
+        List<Film> films = jdbcTemplate.query(
+                SELECT_FILMS_WITH_GENRES
+                        + "WHERE f.film_id = ? "
+                        + "ORDER BY g.genre_id", filmWithGenresExtractor, id);
+        return films.isEmpty() ? Optional.empty() : Optional.of(films.get(0));
+    }
+
+    @Override
+    public boolean existsById(int id) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS(SELECT 1 FROM films WHERE film_id = ?)",
+                Boolean.class,
+                id));
+    }
+
+    @Override
+    public Set<Integer> findExistingIds(Collection<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        for (List<Integer> chunk : SqlHelper.chunks(new ArrayList<>(ids))) {
+            existing.addAll(jdbcTemplate.queryForList(
+                    String.format("SELECT film_id FROM films WHERE film_id IN (%s)",
+                            SqlHelper.placeholders(chunk.size())),
+                    Integer.class,
+                    chunk.toArray()));
+        }
+        return existing;
+    }
+
+    /**
+     * Фильмы с жанрами в порядке переданных ID, отсутствующие ID пропускаются.
+     */
+    @Override
+    public List<Film> findFilmsWithGenresByIds(List<Integer> ids) {
+        Map<Integer, Film> filmsById = new HashMap<>(ids.size());
+        for (List<Integer> chunk : SqlHelper.chunks(ids)) {
+            jdbcTemplate.query(
+                    SELECT_FILMS_WITH_GENRES
+                            + String.format("WHERE f.film_id IN (%s) ", SqlHelper.placeholders(chunk.size()))
+                            + "ORDER BY f.film_id, g.genre_id",
+                    (ResultSetExtractor<Void>) rs -> {
+                        filmWithGenresExtractor.stream(rs, film -> filmsById.put(film.getId(), film));
+                        return null;
+                    },
+                    chunk.toArray());
+        }
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (Integer id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return films;
+    }
+
     @Override
     public List<Film> findAll() {
         return jdbcTemplate.query(
@@ -81,31 +242,336 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
-    public void addLike(int filmId, int userId) {
+    public List<Film> findPage(int afterId, int limit) {
+        return jdbcTemplate.query(
+                "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, "
+                        + "f.mpa_id, m.name as mpa_name FROM films f "
+                        + "JOIN mpa m ON f.mpa_id = m.mpa_id "
+                        + "WHERE f.film_id > ? "
+                        + "ORDER BY f.film_id "
+                        + "LIMIT ?", filmMapper, afterId, limit);
+    }
+
+    /**
+     * В SELECT попадают только колонки запрошенных полей, таблица mpa присоединяется только для {@code mpa}.
+     * Число лайков берётся из {@link PopularFilmsIndex}.
+     */
+    @Override
+    public List<Map<String, Object>> findPageFields(int afterId, int limit, Set<FilmField> fields) {
+        StringBuilder sql = new StringBuilder("SELECT f.film_id");
+        for (FilmField field : fields) {
+            switch (field) {
+                case NAME -> sql.append(", f.name");
+                case DESCRIPTION -> sql.append(", f.description");
+                case RELEASE_DATE -> sql.append(", f.release_date");
+                case DURATION -> sql.append(", f.duration");
+                case MPA -> sql.append(", f.mpa_id, m.name AS mpa_name");
+                default -> {
+                }
+            }
+        }
+        sql.append(" FROM films f ");
+        if (fields.contains(FilmField.MPA)) {
+            sql.append("JOIN mpa m ON f.mpa_id = m.mpa_id ");
+        }
+        sql.append("WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?");
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            int filmId = rs.getInt("film_id");
+            Map<String, Object> film = new LinkedHashMap<>();
+            film.put(FilmField.ID.getKey(), filmId);
+            for (FilmField field : fields) {
+                switch (field) {
+                    case NAME -> film.put(field.getKey(), rs.getString("name"));
+                    case DESCRIPTION -> film.put(field.getKey(), rs.getString("description"));
+                    case RELEASE_DATE -> film.put(field.getKey(), rs.getDate("release_date").toLocalDate());
+                    case DURATION -> film.put(field.getKey(), rs.getInt("duration"));
+                    case MPA -> film.put(field.getKey(), new Mpa(rs.getInt("mpa_id"), rs.getString("mpa_name")));
+                    case LIKES -> film.put(field.getKey(), popularFilmsIndex.getLikes(filmId));
+                    default -> {
+                    }
+                }
+            }
+            return film;
+        }, afterId, limit);
+    }
+
+    @Override
+    public void streamAllWithGenres(Consumer<Film> consumer) {
+        jdbcTemplate.query(
+                SELECT_FILMS_WITH_GENRES + "ORDER BY f.film_id, g.genre_id",
+                (ResultSetExtractor<Void>) rs -> {
+                    filmWithGenresExtractor.stream(rs, consumer);
+                    return null;
+                });
+    }
+
+    @Override
+    @Transactional
+    public boolean addLike(int filmId, int userId) {
+        holdLikesWriteGate();
+        int rowsInserted;
+        try {
+            rowsInserted = jdbcTemplate.update(INSERT_LIKE_IF_ABSENT, filmId, userId, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            // Параллельная транзакция вставила ту же строку между проверкой NOT EXISTS и вставкой
+            rowsInserted = 0;
+        }
+        if (rowsInserted == 0) {
+            return false;
+        }
         jdbcTemplate.update(
-                "INSERT INTO likes (film_id, user_id) VALUES (?, ?)",
-                filmId, userId);
+                "UPDATE film_likes_count SET likes_count = likes_count + 1 WHERE film_id = ?",
+                filmId);
+        afterCommit(() -> {
+            popularFilmsIndex.increment(filmId);
+            userLikesIndex.addLike(userId, filmId);
+        });
         log.info("Added like from user {} to film {}", userId, filmId);
+        return true;
     }
 
     @Override
-    public void removeLike(int filmId, int userId) {
-        jdbcTemplate.update(
+    @Transactional
+    public boolean removeLike(int filmId, int userId) {
+        holdLikesWriteGate();
+        int rowsDeleted = jdbcTemplate.update(
                 "DELETE FROM likes WHERE film_id = ? AND user_id = ?",
                 filmId, userId);
+        if (rowsDeleted == 0) {
+            return false;
+        }
+        jdbcTemplate.update(
+                "UPDATE film_likes_count SET likes_count = likes_count - 1 WHERE film_id = ?",
+                filmId);
+        afterCommit(() -> {
+            popularFilmsIndex.decrement(filmId);
+            userLikesIndex.removeLike(userId, filmId);
+        });
         log.info("Removed like from user {} to film {}", userId, filmId);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean[] applyLikes(List<LikeOperation> operations) {
+        holdLikesWriteGate();
+        boolean[] changed = new boolean[operations.size()];
+        Map<Integer, Integer> likesDelta = new HashMap<>();
+        List<LikeOperation> appliedOperations = new ArrayList<>();
+
+        int from = 0;
+        while (from < operations.size()) {
+            LikeOperation.Type type = operations.get(from).getOp();
+            int to = from;
+            List<Object[]> batchArgs = new ArrayList<>();
+            while (to < operations.size() && operations.get(to).getOp() == type) {
+                LikeOperation operation = operations.get(to);
+                batchArgs.add(type == LikeOperation.Type.LIKE
+                        ? new Object[] { operation.getFilmId(), operation.getUserId(),
+                                operation.getFilmId(), operation.getUserId() }
+                        : new Object[] { operation.getFilmId(), operation.getUserId() });
+                to++;
+            }
+
+            int[] rowsAffected = type == LikeOperation.Type.LIKE
+                    ? insertLikesIfAbsent(batchArgs)
+                    : jdbcTemplate.batchUpdate("DELETE FROM likes WHERE film_id = ? AND user_id = ?", batchArgs);
+
+            for (int i = 0; i < rowsAffected.length; i++) {
+                if (rowsAffected[i] > 0) {
+                    LikeOperation operation = operations.get(from + i);
+                    changed[from + i] = true;
+                    likesDelta.merge(operation.getFilmId(), type == LikeOperation.Type.LIKE ? 1 : -1, Integer::sum);
+                    appliedOperations.add(operation);
+                }
+            }
+            from = to;
+        }
+
+        likesDelta.values().removeIf(delta -> delta == 0);
+        List<Object[]> counterArgs = new ArrayList<>();
+        likesDelta.forEach((filmId, delta) -> counterArgs.add(new Object[] { delta, filmId }));
+        jdbcTemplate.batchUpdate(
+                "UPDATE film_likes_count SET likes_count = likes_count + ? WHERE film_id = ?",
+                counterArgs);
+        afterCommit(() -> {
+            for (LikeOperation operation : appliedOperations) {
+                if (operation.getOp() == LikeOperation.Type.LIKE) {
+                    userLikesIndex.addLike(operation.getUserId(), operation.getFilmId());
+                } else {
+                    userLikesIndex.removeLike(operation.getUserId(), operation.getFilmId());
+                }
+            }
+            likesDelta.forEach(popularFilmsIndex::add);
+        });
+
+        log.info("Applied {} like operations, {} films changed popularity", operations.size(), likesDelta.size());
+        return changed;
     }
 
     @Override
     public List<Film> getMostPopularFilms(int count) {
-        return jdbcTemplate.query(
-                "SELECT f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_id, " +
-                        "m.name as mpa_name, COUNT(l.user_id) as likes_count " +
-                        "FROM films f " +
-                        "JOIN mpa m ON f.mpa_id = m.mpa_id " +
+        List<Integer> filmIds = popularFilmsIndex.getTopFilmIds(count);
+        if (filmIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        String inSql = SqlHelper.placeholders(filmIds.size());
+        List<Film> films = jdbcTemplate.query(
+                String.format("SELECT f.film_id, f.name, f.description, f.release_date, f.duration, "
+                        + "f.mpa_id, m.name as mpa_name FROM films f "
+                        + "JOIN mpa m ON f.mpa_id = m.mpa_id "
+                        + "WHERE f.film_id IN (%s)", inSql),
+                filmMapper,
+                filmIds.toArray());
+
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < filmIds.size(); i++) {
+            positions.put(filmIds.get(i), i);
+        }
+        films.sort(Comparator.comparingInt(film -> positions.get(film.getId())));
+        return films;
+    }
+
+    /**
+     * Пересчитывает таблицу film_likes_count по таблице likes и возвращает актуальные счётчики.
+     */
+    @Transactional
+    public Map<Integer, Integer> rebuildLikesCounts() {
+        jdbcTemplate.update(
+                "MERGE INTO film_likes_count (film_id, likes_count) KEY (film_id) " +
+                        "SELECT f.film_id, COUNT(l.user_id) FROM films f " +
                         "LEFT JOIN likes l ON f.film_id = l.film_id " +
-                        "GROUP BY f.film_id " +
-                        "ORDER BY likes_count DESC " +
-                        "LIMIT ?", filmMapper, count);
+                        "GROUP BY f.film_id");
+        return findLikesCounts();
+    }
+
+    public Map<Integer, Integer> findLikesCounts() {
+        Map<Integer, Integer> likesCounts = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, likes_count FROM film_likes_count",
+                rs -> {
+                    likesCounts.put(rs.getInt("film_id"), rs.getInt("likes_count"));
+                });
+        return likesCounts;
+    }
+
+    /**
+     * Загружает все лайки, сгруппированные по пользователям, для построения индекса рекомендаций.
+     */
+    public Map<Integer, int[]> loadUserLikes() {
+        Map<Integer, List<Integer>> likes = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, film_id FROM likes",
+                rs -> {
+                    likes.computeIfAbsent(rs.getInt("user_id"), id -> new ArrayList<>()).add(rs.getInt("film_id"));
+                });
+        Map<Integer, int[]> userLikes = new HashMap<>();
+        likes.forEach((userId, filmIds) ->
+                userLikes.put(userId, filmIds.stream().mapToInt(Integer::intValue).toArray()));
+        return userLikes;
+    }
+
+    /**
+     * Количество фильмов, у которых счётчик лайков расходится с таблицей likes.
+     */
+    public int countLikesCountMismatches() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM films f " +
+                        "LEFT JOIN film_likes_count c ON f.film_id = c.film_id " +
+                        "WHERE c.likes_count IS NULL " +
+                        "OR c.likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)",
+                Integer.class);
+    }
+
+    /**
+     * Пакетная вставка лайков, в которой строки, уже вставленные параллельной транзакцией, считаются
+     * невставленными. H2 выполняет пакет до конца и возвращает в {@link BatchUpdateException} результат
+     * каждой строки, поэтому остальные строки пакета не теряются.
+     */
+    private int[] insertLikesIfAbsent(List<Object[]> batchArgs) {
+        return jdbcTemplate.execute(INSERT_LIKE_IF_ABSENT, (PreparedStatementCallback<int[]>) ps -> {
+            for (Object[] args : batchArgs) {
+                for (int i = 0; i < args.length; i++) {
+                    ps.setObject(i + 1, args[i]);
+                }
+                ps.addBatch();
+            }
+            try {
+                return ps.executeBatch();
+            } catch (BatchUpdateException e) {
+                int[] rowsAffected = e.getUpdateCounts();
+                if (rowsAffected.length != batchArgs.size() || !isDuplicateKey(e)) {
+                    throw e;
+                }
+                for (int i = 0; i < rowsAffected.length; i++) {
+                    if (rowsAffected[i] == Statement.EXECUTE_FAILED) {
+                        rowsAffected[i] = 0;
+                    }
+                }
+                return rowsAffected;
+            }
+        });
+    }
+
+    private static boolean isDuplicateKey(BatchUpdateException e) {
+        SQLException next = e.getNextException();
+        if (next == null) {
+            return false;
+        }
+        for (; next != null; next = next.getNextException()) {
+            if (!DUPLICATE_KEY_SQL_STATE.equals(next.getSQLState())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Выполняет {@code action} в транзакции, пока новые записи лайков и счётчиков ждут, а начатые уже
+     * завершены вместе с обновлением индексов. Так таблицы и индексы в памяти сравниваются в один момент.
+     * Соединение берётся до ожидания, чтобы ожидающие записи не заняли весь пул.
+     */
+    @Transactional
+    public <T> T withLikesWritesPaused(Supplier<T> action) {
+        likesWriteGate.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            likesWriteGate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Транзакция, которая пишет лайки или счётчики, держит разделяемую блокировку до своего завершения,
+     * то есть до обновления индексов в {@link #afterCommit(Runnable)}.
+     */
+    private void holdLikesWriteGate() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Lock lock = likesWriteGate.readLock();
+        lock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Индексы в памяти меняются только после фиксации транзакции, чтобы откат не оставлял в них лишних лайков.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
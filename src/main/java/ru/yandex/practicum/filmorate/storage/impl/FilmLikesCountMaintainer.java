@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.storage.cache.PopularFilmsCache;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+
+/**
+ * Восстанавливает счётчики лайков и рейтинг популярных фильмов при старте, до того как веб-сервер начнёт
+ * принимать запросы, и периодически сверяет их с таблицей likes. Сверка и перестроение идут, пока записи
+ * лайков приостановлены, поэтому таблица и индекс читаются в одном и том же состоянии.
+ */
+@Component
+@Profile("!memstore")
+@Slf4j
+@RequiredArgsConstructor
+public class FilmLikesCountMaintainer implements SmartInitializingSingleton {
+    private final FilmDbStorage filmDbStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final PopularFilmsCache popularFilmsCache;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        int films = filmDbStorage.withLikesWritesPaused(() -> {
+            Map<Integer, Integer> likesCounts = filmDbStorage.rebuildLikesCounts();
+            rebuildIndex(likesCounts);
+            return likesCounts.size();
+        });
+        log.info("Popular films index rebuilt for {} films", films);
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.likes.consistency-check-interval-ms:300000}",
+            fixedDelayString = "${filmorate.likes.consistency-check-interval-ms:300000}")
+    public void checkConsistency() {
+        filmDbStorage.withLikesWritesPaused(() -> {
+            int mismatches = filmDbStorage.countLikesCountMismatches();
+            if (mismatches > 0) {
+                log.warn("Found {} films with inconsistent likes count, rebuilding", mismatches);
+                rebuildIndex(filmDbStorage.rebuildLikesCounts());
+                return null;
+            }
+
+            Map<Integer, Integer> likesCounts = filmDbStorage.findLikesCounts();
+            if (!likesCounts.equals(popularFilmsIndex.snapshot())) {
+                log.warn("Popular films index is out of sync with likes counts, reloading");
+                rebuildIndex(likesCounts);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Ответы GET /films/popular, построенные по старому рейтингу, после перестроения не отдаются.
+     */
+    private void rebuildIndex(Map<Integer, Integer> likesCounts) {
+        popularFilmsIndex.rebuild(likesCounts);
+        popularFilmsCache.evictAll();
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+
+/**
+ * Строит граф дружбы из таблицы friends при старте приложения: после создания всех бинов и миграций,
+ * но до того, как веб-сервер начнёт принимать запросы, поэтому ни один запрос не видит пустой граф
+ * и ни одна запись не теряется при загрузке. Затем периодически сверяет граф с таблицей, пока записи
+ * дружбы приостановлены, и перестраивает его при расхождении.
+ */
+@Component
+@Profile("!memstore")
+@Slf4j
+@RequiredArgsConstructor
+public class FriendGraphIndexLoader implements SmartInitializingSingleton {
+    private final UserDbStorage userDbStorage;
+    private final FriendGraphIndex friendGraphIndex;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        friendGraphIndex.rebuild(userDbStorage.loadFriendGraph());
+        FriendGraphIndex.FootprintReport footprint = friendGraphIndex.getFootprint();
+        log.info("Friend graph index loaded: {} users, {} friendships, ~{} KB",
+                footprint.users(), footprint.friendships(), footprint.estimatedBytes() / 1024);
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.friends.consistency-check-interval-ms:300000}",
+            fixedDelayString = "${filmorate.friends.consistency-check-interval-ms:300000}")
+    public void checkConsistency() {
+        userDbStorage.withFriendsWritesPaused(() -> {
+            Map<Integer, int[]> friends = userDbStorage.loadFriendGraph();
+            if (!friendGraphIndex.matches(friends)) {
+                log.warn("Friend graph index is out of sync with friends table, reloading");
+                friendGraphIndex.rebuild(friends);
+            }
+            return null;
+        });
+    }
+}
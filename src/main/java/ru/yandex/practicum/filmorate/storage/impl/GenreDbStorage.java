@@ -1,13 +1,16 @@
 package ru.yandex.practicum.filmorate.storage.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
@@ -16,26 +19,52 @@ import ru.yandex.practicum.filmorate.mapper.FilmGenreMapper;
 import ru.yandex.practicum.filmorate.mapper.GenreMapper;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
 
 @Repository
+@Timed(value = "filmorate.storage", description = "Storage method execution time")
 @Slf4j
-@RequiredArgsConstructor
 public class GenreDbStorage implements GenreStorage {
     private final JdbcTemplate jdbcTemplate;
     private final GenreMapper genreMapper;
     private final FilmGenreMapper filmGenreMapper;
+    private final DistributionSummary insertedRows;
+    private final DistributionSummary deletedRows;
+    private final ReferenceDataCache<Genre> genreCache =
+            new ReferenceDataCache<>("genres", this::loadAllGenres, Genre::getId,
+                    genre -> new Genre(genre.getId(), genre.getName()));
+
+    public GenreDbStorage(JdbcTemplate jdbcTemplate, GenreMapper genreMapper, FilmGenreMapper filmGenreMapper,
+                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.genreMapper = genreMapper;
+        this.filmGenreMapper = filmGenreMapper;
+        this.insertedRows = rowsWritten(meterRegistry, "insert");
+        this.deletedRows = rowsWritten(meterRegistry, "delete");
+        genreCache.bindTo(meterRegistry);
+    }
 
     @Override
     public List<Genre> findAll() {
-        return jdbcTemplate.query(
-                "SELECT genre_id, name FROM genres ORDER BY genre_id", genreMapper);
+        return genreCache.findAll();
     }
 
     @Override
     public Optional<Genre> findGenreById(int id) {
-        List<Genre> genres = jdbcTemplate.query(
-                "SELECT genre_id, name FROM genres WHERE genre_id = ?", genreMapper, id);
-        return genres.isEmpty() ? Optional.empty() : Optional.of(genres.get(0));
+        return genreCache.findById(id);
+    }
+
+    /**
+     * Найденные жанры по возрастанию ID, без повторов. Отвечает из кэша справочника, без запросов к БД.
+     */
+    @Override
+    public List<Genre> findGenresByIds(Collection<Integer> ids) {
+        return ids.stream()
+                .distinct()
+                .sorted()
+                .map(genreCache::findById)
+                .flatMap(Optional::stream)
+                .toList();
     }
 
     @Override
@@ -53,19 +82,21 @@ public class GenreDbStorage implements GenreStorage {
             return new java.util.HashMap<>();
         }
 
-        String inSql = String.join(",", java.util.Collections.nCopies(filmIds.size(), "?"));
-
-        List<Map.Entry<Integer, Genre>> filmGenres = jdbcTemplate.query(
-                String.format("SELECT fg.film_id, g.genre_id, g.name FROM genres g " +
-                        "JOIN film_genres fg ON g.genre_id = fg.genre_id " +
-                        "WHERE fg.film_id IN (%s) " +
-                        "ORDER BY fg.film_id, g.genre_id", inSql),
-                filmGenreMapper,
-                filmIds.toArray());
-
         Map<Integer, List<Genre>> result = new java.util.HashMap<>();
-        for (Map.Entry<Integer, Genre> entry : filmGenres) {
-            result.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(entry.getValue());
+        for (List<Integer> chunk : SqlHelper.chunks(filmIds)) {
+            String inSql = SqlHelper.placeholders(chunk.size());
+
+            List<Map.Entry<Integer, Genre>> filmGenres = jdbcTemplate.query(
+                    String.format("SELECT fg.film_id, g.genre_id, g.name FROM genres g " +
+                            "JOIN film_genres fg ON g.genre_id = fg.genre_id " +
+                            "WHERE fg.film_id IN (%s) " +
+                            "ORDER BY fg.film_id, g.genre_id", inSql),
+                    filmGenreMapper,
+                    chunk.toArray());
+
+            for (Map.Entry<Integer, Genre> entry : filmGenres) {
+                result.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(entry.getValue());
+            }
         }
 
         return result;
@@ -94,15 +125,71 @@ public class GenreDbStorage implements GenreStorage {
         log.info("Added genres to film {}: {}", filmId, genres);
     }
 
+    @Override
+    public void addGenresForFilms(Map<Integer, List<Genre>> genresByFilm) {
+        List<Object[]> batchArgs = new ArrayList<>();
+        genresByFilm.forEach((filmId, genres) -> genres.stream()
+                .map(Genre::getId)
+                .distinct()
+                .forEach(genreId -> batchArgs.add(new Object[] { filmId, genreId })));
+        if (batchArgs.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)",
+                batchArgs);
+        log.info("Added {} genre links for {} films", batchArgs.size(), genresByFilm.size());
+    }
+
+    /**
+     * Записывает только разницу между текущим и новым набором жанров: одно чтение текущего набора
+     * и пакетные INSERT/DELETE для добавленных и удалённых жанров. Если набор не изменился, записи нет.
+     */
     @Override
     public void updateFilmGenres(int filmId, List<Genre> genres) {
-        jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", filmId);
+        Set<Integer> current = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT genre_id FROM film_genres WHERE film_id = ?", Integer.class, filmId));
+        Set<Integer> target = new HashSet<>();
+        if (genres != null) {
+            genres.forEach(genre -> target.add(genre.getId()));
+        }
 
-        if (genres == null || genres.isEmpty()) {
-            return;
+        List<Object[]> removed = new ArrayList<>();
+        for (Integer genreId : current) {
+            if (!target.contains(genreId)) {
+                removed.add(new Object[] { filmId, genreId });
+            }
+        }
+        List<Object[]> added = new ArrayList<>();
+        for (Integer genreId : target) {
+            if (!current.contains(genreId)) {
+                added.add(new Object[] { filmId, genreId });
+            }
         }
 
-        addFilmGenres(filmId, new ArrayList<>(genres));
-        log.info("Updated genres for film {}: {}", filmId, genres);
+        if (!removed.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM film_genres WHERE film_id = ? AND genre_id = ?", removed);
+        }
+        if (!added.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", added);
+        }
+        deletedRows.record(removed.size());
+        insertedRows.record(added.size());
+
+        log.info("Updated genres for film {}: {} added, {} removed", filmId, added.size(), removed.size());
+    }
+
+    private static DistributionSummary rowsWritten(MeterRegistry meterRegistry, String operation) {
+        return DistributionSummary.builder("filmorate.film.genres.rows.written")
+                .description("film_genres rows written per genre update")
+                .baseUnit("rows")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private List<Genre> loadAllGenres() {
+        return jdbcTemplate.query(
+                "SELECT genre_id, name FROM genres ORDER BY genre_id", genreMapper);
     }
 }
@@ -3,7 +3,8 @@ package ru.yandex.practicum.filmorate.storage.impl;
 import java.util.List;
 import java.util.Optional;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
@@ -11,24 +12,36 @@ import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.mapper.MpaMapper;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
 
 @Repository
+@Timed(value = "filmorate.storage", description = "Storage method execution time")
 @Slf4j
-@RequiredArgsConstructor
 public class MpaDbStorage implements MpaStorage {
     private final JdbcTemplate jdbcTemplate;
     private final MpaMapper mpaMapper;
+    private final ReferenceDataCache<Mpa> mpaCache =
+            new ReferenceDataCache<>("mpa", this::loadAllMpa, Mpa::getId,
+                    mpa -> new Mpa(mpa.getId(), mpa.getName()));
+
+    public MpaDbStorage(JdbcTemplate jdbcTemplate, MpaMapper mpaMapper, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.mpaMapper = mpaMapper;
+        mpaCache.bindTo(meterRegistry);
+    }
 
     @Override
     public List<Mpa> findAll() {
-        return jdbcTemplate.query(
-                "SELECT mpa_id, name FROM mpa ORDER BY mpa_id", mpaMapper);
+        return mpaCache.findAll();
     }
 
     @Override
     public Optional<Mpa> findMpaById(int id) {
-        List<Mpa> mpas = jdbcTemplate.query(
-                "SELECT mpa_id, name FROM mpa WHERE mpa_id = ?", mpaMapper, id);
-        return mpas.isEmpty() ? Optional.empty() : Optional.of(mpas.get(0));
+        return mpaCache.findById(id);
+    }
+
+    private List<Mpa> loadAllMpa() {
+        return jdbcTemplate.query(
+                "SELECT mpa_id, name FROM mpa ORDER BY mpa_id", mpaMapper);
     }
 }
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+final class SqlHelper {
+    static final int MAX_IN_PARAMETERS = 500;
+
+    private SqlHelper() {
+    }
+
+    static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Делит список на части не длиннее MAX_IN_PARAMETERS для запросов вида IN (...).
+     */
+    static <T> List<List<T>> chunks(List<T> values) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += MAX_IN_PARAMETERS) {
+            chunks.add(values.subList(from, Math.min(from + MAX_IN_PARAMETERS, values.size())));
+        }
+        return chunks;
+    }
+}
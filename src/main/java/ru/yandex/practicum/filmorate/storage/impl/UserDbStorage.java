@@ -2,28 +2,64 @@ package ru.yandex.practicum.filmorate.storage.impl;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import lombok.extern.slf4j.Slf4j;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
 
 @Repository
+@Profile("!memstore")
+@Timed(value = "filmorate.storage", description = "Storage method execution time")
 @Slf4j
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int FRIENDS_LOCK_STRIPES = 64;
+
     private final JdbcTemplate jdbcTemplate;
     private final UserMapper userMapper;
+    private final FriendGraphIndex friendGraphIndex;
+    private final Lock importLock = new ReentrantLock();
+    private final Lock[] friendsLocks = Stream.generate(ReentrantLock::new)
+            .limit(FRIENDS_LOCK_STRIPES)
+            .toArray(Lock[]::new);
 
     @Override
     public User create(User user) {
@@ -60,6 +96,80 @@ public class UserDbStorage implements UserStorage {
         return user;
     }
 
+    /**
+     * Существующие пользователи ищутся одним запросом по логинам (на каждые {@value SqlHelper#MAX_IN_PARAMETERS}),
+     * затем одно пакетное обновление и одна пакетная вставка с получением ключей. При нескольких пользователях
+     * с одним логином обновляется тот, у кого меньше ID.
+     * <p>
+     * Логин в таблице не уникален: {@code POST /users} допускает одинаковые логины. Чтобы два параллельных
+     * импорта не вставили один и тот же новый логин дважды, импорты этого экземпляра выполняются по одному
+     * до фиксации транзакции. Импорты с нескольких экземпляров приложения так не упорядочиваются.
+     */
+    @Override
+    @Transactional
+    public boolean[] upsertAllByLogin(List<User> users) {
+        boolean[] created = new boolean[users.size()];
+        if (users.isEmpty()) {
+            return created;
+        }
+        holdImportLock();
+
+        Map<String, Integer> idsByLogin = new HashMap<>(users.size());
+        for (List<User> chunk : SqlHelper.chunks(users)) {
+            jdbcTemplate.query(
+                    String.format("SELECT user_id, login FROM users WHERE login IN (%s) ORDER BY user_id",
+                            SqlHelper.placeholders(chunk.size())),
+                    rs -> {
+                        idsByLogin.putIfAbsent(rs.getString("login"), rs.getInt("user_id"));
+                    },
+                    chunk.stream().map(User::getLogin).toArray());
+        }
+
+        List<User> updated = new ArrayList<>();
+        List<User> inserted = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            Integer id = idsByLogin.get(user.getLogin());
+            if (id == null) {
+                created[i] = true;
+                inserted.add(user);
+            } else {
+                user.setId(id);
+                updated.add(user);
+            }
+        }
+
+        if (!updated.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE users SET email = ?, name = ?, birthday = ? WHERE user_id = ?",
+                    updated.stream()
+                            .map(user -> new Object[] {
+                                    user.getEmail(), user.getName(), Date.valueOf(user.getBirthday()), user.getId() })
+                            .toList());
+        }
+        if (!inserted.isEmpty()) {
+            insertAll(inserted);
+        }
+        log.info("Imported {} users: {} created, {} updated", users.size(), inserted.size(), updated.size());
+        return created;
+    }
+
+    /**
+     * Блокировка снимается после завершения транзакции, когда вставленные логины уже видны следующему импорту.
+     */
+    private void holdImportLock() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        importLock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                importLock.unlock();
+            }
+        });
+    }
+
     @Override
     public Optional<User> findUserById(int id) {
         List<User> users = jdbcTemplate.query(
@@ -69,6 +179,49 @@ public class UserDbStorage implements UserStorage {
         return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
     }
 
+    @Override
+    public Set<Integer> findExistingIds(Collection<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        for (List<Integer> chunk : SqlHelper.chunks(new ArrayList<>(ids))) {
+            existing.addAll(jdbcTemplate.queryForList(
+                    String.format("SELECT user_id FROM users WHERE user_id IN (%s)",
+                            SqlHelper.placeholders(chunk.size())),
+                    Integer.class,
+                    chunk.toArray()));
+        }
+        return existing;
+    }
+
+    /**
+     * Пользователи в порядке переданных ID, отсутствующие ID пропускаются.
+     */
+    @Override
+    public List<User> findUsersByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Integer, User> usersById = new HashMap<>(ids.size());
+        for (List<Integer> chunk : SqlHelper.chunks(ids)) {
+            jdbcTemplate.query(
+                    String.format("SELECT user_id, email, login, name, birthday FROM users WHERE user_id IN (%s)",
+                            SqlHelper.placeholders(chunk.size())),
+                    rs -> {
+                        User user = userMapper.mapRow(rs, rs.getRow());
+                        usersById.put(user.getId(), user);
+                    },
+                    chunk.toArray());
+        }
+        List<User> users = new ArrayList<>(usersById.size());
+        for (Integer id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
     @Override
     public List<User> findAll() {
         return jdbcTemplate.query(
@@ -77,49 +230,194 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
-    public void addFriend(int userId, int friendId) {
+    public List<User> findPage(int afterId, int limit) {
+        return jdbcTemplate.query(
+                "SELECT user_id, email, login, name, birthday FROM users " +
+                        "WHERE user_id > ? ORDER BY user_id LIMIT ?",
+                userMapper,
+                afterId, limit);
+    }
+
+    /**
+     * В SELECT попадают только колонки запрошенных полей.
+     */
+    @Override
+    public List<Map<String, Object>> findPageFields(int afterId, int limit, Set<UserField> fields) {
+        StringBuilder sql = new StringBuilder("SELECT user_id");
+        for (UserField field : fields) {
+            switch (field) {
+                case EMAIL -> sql.append(", email");
+                case LOGIN -> sql.append(", login");
+                case NAME -> sql.append(", name");
+                case BIRTHDAY -> sql.append(", birthday");
+                default -> {
+                }
+            }
+        }
+        sql.append(" FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?");
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            Map<String, Object> user = new LinkedHashMap<>();
+            user.put(UserField.ID.getKey(), rs.getInt("user_id"));
+            for (UserField field : fields) {
+                switch (field) {
+                    case EMAIL -> user.put(field.getKey(), rs.getString("email"));
+                    case LOGIN -> user.put(field.getKey(), rs.getString("login"));
+                    case NAME -> user.put(field.getKey(), rs.getString("name"));
+                    case BIRTHDAY -> user.put(field.getKey(), rs.getDate("birthday").toLocalDate());
+                    default -> {
+                    }
+                }
+            }
+            return user;
+        }, afterId, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        stream("SELECT user_id, email, login, name, birthday FROM users ORDER BY user_id",
+                rs -> {
+                    consumer.accept(userMapper.mapRow(rs, rs.getRow()));
+                });
+    }
+
+    @Override
+    public void streamFriendships(Consumer<Friendship> consumer) {
+        stream("SELECT user_id, friend_id FROM friends ORDER BY user_id, friend_id",
+                rs -> {
+                    consumer.accept(new Friendship(rs.getInt("user_id"), rs.getInt("friend_id")));
+                });
+    }
+
+    @Override
+    public boolean addFriend(int userId, int friendId) {
         validUserExists(userId);
         validUserExists(friendId);
-        jdbcTemplate.update(
-                "INSERT INTO friends (user_id, friend_id) VALUES (?, ?)",
-                userId, friendId);
-        log.info("User {} added friend {}", userId, friendId);
+        return withFriendsLock(userId, () -> {
+            int rowsInserted;
+            try {
+                rowsInserted = jdbcTemplate.update(
+                        "INSERT INTO friends (user_id, friend_id) SELECT CAST(? AS INTEGER), CAST(? AS INTEGER) "
+                                + "WHERE NOT EXISTS (SELECT 1 FROM friends WHERE user_id = ? AND friend_id = ?)",
+                        userId, friendId, userId, friendId);
+            } catch (DuplicateKeyException e) {
+                // Параллельный запрос вставил ту же строку между проверкой NOT EXISTS и вставкой
+                rowsInserted = 0;
+            }
+            if (rowsInserted == 0) {
+                return false;
+            }
+            afterCommit(() -> friendGraphIndex.addFriend(userId, friendId));
+            log.info("User {} added friend {}", userId, friendId);
+            return true;
+        });
     }
 
     @Override
-    public void removeFriend(int userId, int friendId) {
+    public boolean removeFriend(int userId, int friendId) {
         validUserExists(userId);
         validUserExists(friendId);
-        jdbcTemplate.update(
-                "DELETE FROM friends WHERE user_id = ? AND friend_id = ?",
-                userId, friendId);
-        log.info("User {} removed friend {}", userId, friendId);
+        return withFriendsLock(userId, () -> {
+            int rowsDeleted = jdbcTemplate.update(
+                    "DELETE FROM friends WHERE user_id = ? AND friend_id = ?",
+                    userId, friendId);
+            if (rowsDeleted == 0) {
+                return false;
+            }
+            afterCommit(() -> friendGraphIndex.removeFriend(userId, friendId));
+            log.info("User {} removed friend {}", userId, friendId);
+            return true;
+        });
     }
 
     @Override
     public List<User> getFriends(int userId) {
-        validUserExists(userId);
-        return jdbcTemplate.query(
-                "SELECT u.user_id, u.email, u.login, u.name, u.birthday FROM users u " +
-                        "JOIN friends f ON u.user_id = f.friend_id " +
-                        "WHERE f.user_id = ?",
-                userMapper,
-                userId);
+        return findUsersByIds(Arrays.stream(friendGraphIndex.getFriendIds(userId)).boxed().toList());
     }
 
     @Override
     public List<User> getCommonFriends(int userId, int otherUserId) {
-        validUserExists(userId);
-        validUserExists(otherUserId);
-        return jdbcTemplate.query(
-                "SELECT u.user_id, u.email, u.login, u.name, u.birthday FROM users u " +
-                        "WHERE u.user_id IN (" +
-                        "  SELECT f1.friend_id FROM friends f1 " +
-                        "  JOIN friends f2 ON f1.friend_id = f2.friend_id " +
-                        "  WHERE f1.user_id = ? AND f2.user_id = ?" +
-                        ")",
-                userMapper,
-                userId, otherUserId);
+        return findUsersByIds(
+                Arrays.stream(friendGraphIndex.getCommonFriendIds(userId, otherUserId)).boxed().toList());
+    }
+
+    @Override
+    public long getFriendGraphVersion() {
+        return friendGraphIndex.getVersion();
+    }
+
+    /**
+     * Выполняет {@code action}, пока записи дружбы ждут, а начатые уже завершены вместе с обновлением графа.
+     * Так таблица friends и граф в памяти сравниваются в один момент.
+     */
+    public <T> T withFriendsWritesPaused(Supplier<T> action) {
+        for (Lock lock : friendsLocks) {
+            lock.lock();
+        }
+        try {
+            return action.get();
+        } finally {
+            for (int i = friendsLocks.length - 1; i >= 0; i--) {
+                friendsLocks[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Загружает все пары из friends для построения in-memory графа дружбы.
+     */
+    public Map<Integer, int[]> loadFriendGraph() {
+        Map<Integer, List<Integer>> friends = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, friend_id FROM friends",
+                rs -> {
+                    friends.computeIfAbsent(rs.getInt("user_id"), id -> new ArrayList<>()).add(rs.getInt("friend_id"));
+                });
+        Map<Integer, int[]> graph = new HashMap<>();
+        friends.forEach((userId, friendIds) ->
+                graph.put(userId, friendIds.stream().mapToInt(Integer::intValue).toArray()));
+        return graph;
+    }
+
+    private void insertAll(List<User> users) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(
+                        "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                        new String[] { "user_id" }),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        User user = users.get(i);
+                        ps.setString(1, user.getEmail());
+                        ps.setString(2, user.getLogin());
+                        ps.setString(3, user.getName());
+                        ps.setDate(4, Date.valueOf(user.getBirthday()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(((Number) keys.get(i).values().iterator().next()).intValue());
+        }
+    }
+
+    /**
+     * Читает результат курсором только вперёд, порциями по {@value #EXPORT_FETCH_SIZE} строк,
+     * чтобы выгрузка всей таблицы не держала её в памяти.
+     */
+    private void stream(String sql, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, handler);
     }
 
     private void validUserExists(int userId) {
@@ -130,4 +428,44 @@ public class UserDbStorage implements UserStorage {
             throw new NotFoundException("User with ID " + userId + " not found");
         }
     }
+
+    /**
+     * Записи дружбы одного пользователя упорядочены блокировкой, которая держится до завершения транзакции,
+     * то есть до обновления графа в {@link #afterCommit(Runnable)}. Иначе параллельные добавление и удаление
+     * одной пары могли бы применить изменения к графу в другом порядке, чем к таблице.
+     */
+    private <T> T withFriendsLock(int userId, Supplier<T> action) {
+        Lock lock = friendsLocks[Math.floorMod(userId, friendsLocks.length)];
+        lock.lock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                return action.get();
+            } finally {
+                lock.unlock();
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+        return action.get();
+    }
+
+    /**
+     * Граф в памяти меняется только после фиксации транзакции, чтобы откат не оставлял в нём лишних друзей.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 }
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage.impl;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
+
+/**
+ * Строит индекс лайков по пользователям из таблицы likes при старте приложения, до того как веб-сервер
+ * начнёт принимать запросы. Дальше индекс обновляется инкрементально при добавлении и удалении лайков.
+ */
+@Component
+@Profile("!memstore")
+@Slf4j
+@RequiredArgsConstructor
+public class UserLikesIndexLoader implements SmartInitializingSingleton {
+    private final FilmDbStorage filmDbStorage;
+    private final UserLikesIndex userLikesIndex;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        userLikesIndex.rebuild(filmDbStorage.loadUserLikes());
+        log.info("User likes index loaded for {} users", userLikesIndex.asMap().size());
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory граф дружбы: для каждого пользователя отсортированный массив ID друзей.
+ * Массивы не изменяются после публикации, запись заменяет массив целиком,
+ * поэтому чтение и пересечение списков выполняются без блокировок. Перестроение собирает новую карту
+ * и подменяет ссылку, так что читатели видят либо старый, либо новый граф целиком.
+ */
+@Component
+public class FriendGraphIndex {
+    private volatile Map<Integer, int[]> friendsByUser = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    public void rebuild(Map<Integer, int[]> friends) {
+        Map<Integer, int[]> rebuilt = new ConcurrentHashMap<>(friends.size());
+        friends.forEach((userId, friendIds) -> rebuilt.put(userId, SortedIntArrays.sortedCopy(friendIds)));
+        friendsByUser = rebuilt;
+        version.incrementAndGet();
+    }
+
+    public void addFriend(int userId, int friendId) {
+        friendsByUser.compute(userId, (id, friendIds) ->
+                SortedIntArrays.insert(friendIds == null ? SortedIntArrays.EMPTY : friendIds, friendId));
+        version.incrementAndGet();
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        friendsByUser.computeIfPresent(userId, (id, friendIds) -> SortedIntArrays.remove(friendIds, friendId));
+        version.incrementAndGet();
+    }
+
+    /**
+     * Совпадает ли граф с переданными списками друзей. Пользователь без друзей и отсутствующий пользователь
+     * считаются одинаковыми.
+     */
+    public boolean matches(Map<Integer, int[]> friends) {
+        Map<Integer, int[]> graph = friendsByUser;
+        for (Map.Entry<Integer, int[]> entry : graph.entrySet()) {
+            int[] expected = friends.getOrDefault(entry.getKey(), SortedIntArrays.EMPTY);
+            if (!Arrays.equals(entry.getValue(), SortedIntArrays.sortedCopy(expected))) {
+                return false;
+            }
+        }
+        for (Map.Entry<Integer, int[]> entry : friends.entrySet()) {
+            if (!graph.containsKey(entry.getKey()) && entry.getValue().length > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Номер версии графа, увеличивается при каждом изменении. Используется для инвалидации кэшей.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public int[] getFriendIds(int userId) {
+        return friendsByUser.getOrDefault(userId, SortedIntArrays.EMPTY);
+    }
+
+    public int[] getCommonFriendIds(int userId, int otherUserId) {
+        Map<Integer, int[]> graph = friendsByUser;
+        return SortedIntArrays.intersect(graph.getOrDefault(userId, SortedIntArrays.EMPTY),
+                graph.getOrDefault(otherUserId, SortedIntArrays.EMPTY));
+    }
+
+    public FootprintReport getFootprint() {
+        long edges = 0;
+        long bytes = 0;
+        for (int[] friendIds : friendsByUser.values()) {
+            edges += friendIds.length;
+            bytes += SortedIntArrays.estimateBytes(friendIds);
+        }
+        return new FootprintReport(friendsByUser.size(), edges, bytes);
+    }
+
+    public record FootprintReport(int users, long friendships, long estimatedBytes) {
+    }
+}
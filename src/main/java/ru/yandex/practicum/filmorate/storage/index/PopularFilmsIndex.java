@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory рейтинг фильмов по количеству лайков.
+ * Ключ упорядочен по убыванию лайков, при равенстве - по возрастанию ID фильма,
+ * поэтому топ-N читается первыми N элементами без сортировки.
+ */
+@Component
+public class PopularFilmsIndex {
+    private final Map<Integer, Integer> likesByFilm = new HashMap<>();
+    private final TreeSet<Long> ranking = new TreeSet<>();
+
+    public synchronized void rebuild(Map<Integer, Integer> likesCounts) {
+        likesByFilm.clear();
+        ranking.clear();
+        likesCounts.forEach((filmId, likes) -> put(filmId, likes));
+    }
+
+    public synchronized void register(int filmId) {
+        if (!likesByFilm.containsKey(filmId)) {
+            put(filmId, 0);
+        }
+    }
+
+    public void increment(int filmId) {
+        add(filmId, 1);
+    }
+
+    public void decrement(int filmId) {
+        add(filmId, -1);
+    }
+
+    public synchronized void add(int filmId, int delta) {
+        int likes = likesByFilm.getOrDefault(filmId, 0);
+        ranking.remove(key(filmId, likes));
+        put(filmId, Math.max(likes + delta, 0));
+    }
+
+    public synchronized int getLikes(int filmId) {
+        return likesByFilm.getOrDefault(filmId, 0);
+    }
+
+    public synchronized List<Integer> getTopFilmIds(int count) {
+        List<Integer> filmIds = new ArrayList<>(Math.min(Math.max(count, 0), ranking.size()));
+        Iterator<Long> iterator = ranking.iterator();
+        while (iterator.hasNext() && filmIds.size() < count) {
+            filmIds.add((int) (long) iterator.next());
+        }
+        return filmIds;
+    }
+
+    public synchronized Map<Integer, Integer> snapshot() {
+        return new HashMap<>(likesByFilm);
+    }
+
+    private void put(int filmId, int likes) {
+        likesByFilm.put(filmId, likes);
+        ranking.add(key(filmId, likes));
+    }
+
+    private static long key(int filmId, int likes) {
+        return ((long) (Integer.MAX_VALUE - likes) << 32) | (filmId & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory индекс лайков: для каждого пользователя отсортированный массив ID понравившихся фильмов.
+ * Как и граф дружбы, массивы заменяются целиком при записи, поэтому чтение идёт без блокировок,
+ * а перестроение подменяет всю карту одной ссылкой.
+ */
+@Component
+public class UserLikesIndex {
+    private volatile Map<Integer, int[]> filmsByUser = new ConcurrentHashMap<>();
+
+    public void rebuild(Map<Integer, int[]> likes) {
+        Map<Integer, int[]> rebuilt = new ConcurrentHashMap<>(likes.size());
+        likes.forEach((userId, filmIds) -> rebuilt.put(userId, SortedIntArrays.sortedCopy(filmIds)));
+        filmsByUser = rebuilt;
+    }
+
+    public void addLike(int userId, int filmId) {
+        filmsByUser.compute(userId, (id, filmIds) ->
+                SortedIntArrays.insert(filmIds == null ? SortedIntArrays.EMPTY : filmIds, filmId));
+    }
+
+    public void removeLike(int userId, int filmId) {
+        filmsByUser.computeIfPresent(userId, (id, filmIds) -> SortedIntArrays.remove(filmIds, filmId));
+    }
+
+    public int[] getLikedFilmIds(int userId) {
+        return filmsByUser.getOrDefault(userId, SortedIntArrays.EMPTY);
+    }
+
+    /**
+     * Неизменяемое представление индекса для полного обхода, в том числе параллельного.
+     */
+    public Map<Integer, int[]> asMap() {
+        return Collections.unmodifiableMap(filmsByUser);
+    }
+
+    public static int countCommon(int[] firstFilmIds, int[] secondFilmIds) {
+        return SortedIntArrays.intersectionSize(firstFilmIds, secondFilmIds);
+    }
+}
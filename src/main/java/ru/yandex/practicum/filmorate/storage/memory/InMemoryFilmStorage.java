@@ -0,0 +1,392 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
+
+/**
+ * Хранилище фильмов в памяти для профиля memstore. Фильмы лежат в упорядоченной по ID неблокирующей карте,
+ * лайки - в {@link UserLikesIndex} и {@link PopularFilmsIndex}, жанры - в {@link InMemoryGenreStorage}.
+ * Каждая запись сначала попадает в журнал: {@code F <json>} - создание или изменение фильма,
+ * {@code L/D <filmId> <userId>} - добавление и удаление лайка. Запись лайков упорядочена блокировкой
+ * по пользователю. Журнал периодически сворачивается в снимок из записей {@code F} и {@code L},
+ * при старте состояние восстанавливается из снимка и журнала.
+ */
+@Repository
+@Profile("memstore")
+@Timed(value = "filmorate.storage", description = "Storage method execution time")
+@Slf4j
+public class InMemoryFilmStorage implements FilmStorage {
+    private final ConcurrentSkipListMap<Integer, Film> films = new ConcurrentSkipListMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final LockStripes locks = new LockStripes(64);
+    private final InMemoryGenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final UserLikesIndex userLikesIndex;
+    private final ObjectMapper objectMapper;
+    private final WriteAheadLog wal;
+
+    public InMemoryFilmStorage(InMemoryGenreStorage genreStorage, MpaStorage mpaStorage,
+                               PopularFilmsIndex popularFilmsIndex, UserLikesIndex userLikesIndex,
+                               ObjectMapper objectMapper, WriteAheadLogFactory walFactory) {
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.userLikesIndex = userLikesIndex;
+        this.objectMapper = objectMapper;
+        this.wal = walFactory.open("films");
+        wal.recover(this::apply);
+        log.info("In-memory film storage recovered {} films", films.size());
+    }
+
+    @Override
+    public Film create(Film film) {
+        film.setId(lastId.incrementAndGet());
+        String record = "F " + toJson(film);
+        wal.mutate(() -> {
+            synchronized (locks.forKey(film.getId())) {
+                wal.write(record);
+                put(film);
+            }
+        });
+        wal.commit();
+        log.info("Film created with ID: {}", film.getId());
+        return film;
+    }
+
+    /**
+     * Фильмы пишутся в журнал по одному, коммит журнала - один на пакет.
+     */
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        for (Film film : films) {
+            film.setId(lastId.incrementAndGet());
+            String record = "F " + toJson(film);
+            wal.mutate(() -> {
+                synchronized (locks.forKey(film.getId())) {
+                    wal.write(record);
+                    put(film);
+                }
+            });
+        }
+        wal.commit();
+        log.info("Created {} films", films.size());
+        return films;
+    }
+
+    @Override
+    public Film update(Film film) {
+        String record = "F " + toJson(film);
+        wal.mutate(() -> {
+            synchronized (locks.forKey(film.getId())) {
+                if (!films.containsKey(film.getId())) {
+                    throw new NotFoundException("Film with ID " + film.getId() + " not found");
+                }
+                wal.write(record);
+                put(film);
+            }
+        });
+        wal.commit();
+        log.info("Film updated with ID: {}", film.getId());
+        return film;
+    }
+
+    @Override
+    public Optional<Film> findFilmById(int id) {
+        return Optional.ofNullable(films.get(id)).map(InMemoryFilmStorage::copy);
+    }
+
+    @Override
+    public Optional<Film> findFilmWithGenresById(int id) {
+        return findFilmById(id).map(this::withGenres);
+    }
+
+    @Override
+    public boolean existsById(int id) {
+        return films.containsKey(id);
+    }
+
+    @Override
+    public Set<Integer> findExistingIds(Collection<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        for (Integer id : ids) {
+            if (films.containsKey(id)) {
+                existing.add(id);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public List<Film> findFilmsWithGenresByIds(List<Integer> ids) {
+        return findByIds(ids).stream().map(this::withGenres).toList();
+    }
+
+    @Override
+    public List<Film> findAll() {
+        return films.values().stream().map(InMemoryFilmStorage::copy).toList();
+    }
+
+    @Override
+    public List<Film> findPage(int afterId, int limit) {
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(InMemoryFilmStorage::copy)
+                .toList();
+    }
+
+    /**
+     * Поля читаются из хранимого фильма без копирования.
+     */
+    @Override
+    public List<Map<String, Object>> findPageFields(int afterId, int limit, Set<FilmField> fields) {
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(film -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put(FilmField.ID.getKey(), film.getId());
+                    for (FilmField field : fields) {
+                        switch (field) {
+                            case NAME -> row.put(field.getKey(), film.getName());
+                            case DESCRIPTION -> row.put(field.getKey(), film.getDescription());
+                            case RELEASE_DATE -> row.put(field.getKey(), film.getReleaseDate());
+                            case DURATION -> row.put(field.getKey(), film.getDuration());
+                            case MPA -> row.put(field.getKey(),
+                                    new Mpa(film.getMpa().getId(), film.getMpa().getName()));
+                            case LIKES -> row.put(field.getKey(), popularFilmsIndex.getLikes(film.getId()));
+                            default -> {
+                            }
+                        }
+                    }
+                    return row;
+                })
+                .toList();
+    }
+
+    @Override
+    public void streamAllWithGenres(Consumer<Film> consumer) {
+        films.values().forEach(film -> consumer.accept(withGenres(copy(film))));
+    }
+
+    @Override
+    public boolean addLike(int filmId, int userId) {
+        boolean changed = wal.mutate(() -> {
+            synchronized (locks.forKey(userId)) {
+                if (hasLike(filmId, userId)) {
+                    return false;
+                }
+                wal.write("L " + filmId + " " + userId);
+                like(filmId, userId);
+                return true;
+            }
+        });
+        wal.commit();
+        if (changed) {
+            log.info("Added like from user {} to film {}", userId, filmId);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeLike(int filmId, int userId) {
+        boolean changed = wal.mutate(() -> {
+            synchronized (locks.forKey(userId)) {
+                if (!hasLike(filmId, userId)) {
+                    return false;
+                }
+                wal.write("D " + filmId + " " + userId);
+                unlike(filmId, userId);
+                return true;
+            }
+        });
+        wal.commit();
+        if (changed) {
+            log.info("Removed like from user {} to film {}", userId, filmId);
+        }
+        return changed;
+    }
+
+    /**
+     * Операции пишутся в журнал по одной под блокировкой пользователя, коммит журнала - один на пакет.
+     */
+    @Override
+    public boolean[] applyLikes(List<LikeOperation> operations) {
+        boolean[] changed = new boolean[operations.size()];
+        for (int i = 0; i < operations.size(); i++) {
+            LikeOperation operation = operations.get(i);
+            int filmId = operation.getFilmId();
+            int userId = operation.getUserId();
+            int index = i;
+            wal.mutate(() -> {
+                synchronized (locks.forKey(userId)) {
+                    boolean liked = hasLike(filmId, userId);
+                    if (operation.getOp() == LikeOperation.Type.LIKE && !liked) {
+                        wal.write("L " + filmId + " " + userId);
+                        like(filmId, userId);
+                        changed[index] = true;
+                    } else if (operation.getOp() == LikeOperation.Type.UNLIKE && liked) {
+                        wal.write("D " + filmId + " " + userId);
+                        unlike(filmId, userId);
+                        changed[index] = true;
+                    }
+                }
+            });
+        }
+        wal.commit();
+        log.info("Applied {} like operations", operations.size());
+        return changed;
+    }
+
+    @Override
+    public List<Film> getMostPopularFilms(int count) {
+        return findByIds(popularFilmsIndex.getTopFilmIds(count));
+    }
+
+    /**
+     * Сворачивает журнал в снимок текущих фильмов и лайков, если с прошлого снимка были записи.
+     */
+    @Scheduled(initialDelayString = "${filmorate.memstore.snapshot-interval-ms:600000}",
+            fixedDelayString = "${filmorate.memstore.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        if (wal.size() == 0) {
+            return;
+        }
+        wal.compact(out -> {
+            films.values().forEach(film -> out.accept("F " + toJson(film)));
+            userLikesIndex.asMap().forEach((userId, filmIds) -> {
+                for (int filmId : filmIds) {
+                    out.accept("L " + filmId + " " + userId);
+                }
+            });
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        wal.close();
+    }
+
+    private List<Film> findByIds(List<Integer> ids) {
+        List<Film> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                result.add(copy(film));
+            }
+        }
+        return result;
+    }
+
+    private boolean hasLike(int filmId, int userId) {
+        return Arrays.binarySearch(userLikesIndex.getLikedFilmIds(userId), filmId) >= 0;
+    }
+
+    private void like(int filmId, int userId) {
+        userLikesIndex.addLike(userId, filmId);
+        popularFilmsIndex.increment(filmId);
+    }
+
+    private void unlike(int filmId, int userId) {
+        userLikesIndex.removeLike(userId, filmId);
+        popularFilmsIndex.decrement(filmId);
+    }
+
+    private void put(Film film) {
+        Film stored = copy(film);
+        stored.setGenres(new ArrayList<>());
+        mpaStorage.findMpaById(film.getMpa().getId())
+                .ifPresent(mpa -> stored.setMpa(new Mpa(mpa.getId(), mpa.getName())));
+        films.put(stored.getId(), stored);
+        lastId.accumulateAndGet(stored.getId(), Math::max);
+        popularFilmsIndex.register(stored.getId());
+    }
+
+    /**
+     * Снимок может уже содержать часть записей из журнала, поэтому лайк применяется, только если меняет состояние.
+     */
+    private void apply(String record) {
+        String[] parts = record.split(" ", 2);
+        switch (parts[0]) {
+            case "F" -> put(fromJson(parts[1]));
+            case "L" -> {
+                String[] ids = parts[1].split(" ");
+                int filmId = Integer.parseInt(ids[0]);
+                int userId = Integer.parseInt(ids[1]);
+                if (!hasLike(filmId, userId)) {
+                    like(filmId, userId);
+                }
+            }
+            case "D" -> {
+                String[] ids = parts[1].split(" ");
+                int filmId = Integer.parseInt(ids[0]);
+                int userId = Integer.parseInt(ids[1]);
+                if (hasLike(filmId, userId)) {
+                    unlike(filmId, userId);
+                }
+            }
+            default -> throw new IllegalStateException("Unknown film log record: " + record);
+        }
+    }
+
+    private Film withGenres(Film film) {
+        film.setGenres(new ArrayList<>(genreStorage.getFilmGenres(film.getId())));
+        return film;
+    }
+
+    private String toJson(Film film) {
+        try {
+            return objectMapper.writeValueAsString(film);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize film " + film.getId(), e);
+        }
+    }
+
+    private Film fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, Film.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot deserialize film log record", e);
+        }
+    }
+
+    private static Film copy(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setMpa(film.getMpa() == null ? null : new Mpa(film.getMpa().getId(), film.getMpa().getName()));
+        copy.setGenres(new ArrayList<>(film.getGenres()));
+        return copy;
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.impl.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.SortedIntArrays;
+
+/**
+ * Жанры фильмов в памяти для профиля memstore. Справочник жанров по-прежнему читается из БД через кэш
+ * {@link GenreDbStorage}, а связи фильм-жанр хранятся как отсортированные массивы ID и журналируются
+ * записями {@code G <filmId> <genreId,...>} с полным набором жанров фильма. Снимок журнала состоит
+ * из таких же записей по одной на фильм.
+ */
+@Repository
+@Primary
+@Profile("memstore")
+@Timed(value = "filmorate.storage", description = "Storage method execution time")
+@Slf4j
+public class InMemoryGenreStorage implements GenreStorage {
+    private final GenreDbStorage referenceStorage;
+    private final Map<Integer, int[]> genresByFilm = new ConcurrentHashMap<>();
+    private final LockStripes locks = new LockStripes(64);
+    private final WriteAheadLog wal;
+
+    public InMemoryGenreStorage(GenreDbStorage referenceStorage, WriteAheadLogFactory walFactory) {
+        this.referenceStorage = referenceStorage;
+        this.wal = walFactory.open("film-genres");
+        wal.recover(this::apply);
+    }
+
+    @Override
+    public List<Genre> findAll() {
+        return referenceStorage.findAll();
+    }
+
+    @Override
+    public Optional<Genre> findGenreById(int id) {
+        return referenceStorage.findGenreById(id);
+    }
+
+    @Override
+    public List<Genre> findGenresByIds(Collection<Integer> ids) {
+        return referenceStorage.findGenresByIds(ids);
+    }
+
+    @Override
+    public List<Genre> getFilmGenres(int filmId) {
+        return toGenres(genresByFilm.getOrDefault(filmId, SortedIntArrays.EMPTY));
+    }
+
+    @Override
+    public Map<Integer, List<Genre>> getGenresForFilms(List<Integer> filmIds) {
+        Map<Integer, List<Genre>> result = new HashMap<>();
+        for (Integer filmId : filmIds) {
+            int[] genreIds = genresByFilm.get(filmId);
+            if (genreIds != null) {
+                result.put(filmId, toGenres(genreIds));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void addFilmGenres(int filmId, List<Genre> genres) {
+        append(filmId, genres);
+        wal.commit();
+    }
+
+    @Override
+    public void addGenresForFilms(Map<Integer, List<Genre>> genresByFilm) {
+        genresByFilm.forEach(this::append);
+        wal.commit();
+    }
+
+    @Override
+    public void updateFilmGenres(int filmId, List<Genre> genres) {
+        int[] genreIds = SortedIntArrays.sortedCopy(genres == null
+                ? SortedIntArrays.EMPTY
+                : genres.stream().mapToInt(Genre::getId).toArray());
+        wal.mutate(() -> {
+            synchronized (locks.forKey(filmId)) {
+                if (!Arrays.equals(genreIds, genresByFilm.getOrDefault(filmId, SortedIntArrays.EMPTY))) {
+                    store(filmId, genreIds);
+                }
+            }
+        });
+        wal.commit();
+    }
+
+    /**
+     * Сворачивает журнал в снимок текущих жанров фильмов, если с прошлого снимка были записи.
+     */
+    @Scheduled(initialDelayString = "${filmorate.memstore.snapshot-interval-ms:600000}",
+            fixedDelayString = "${filmorate.memstore.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        if (wal.size() == 0) {
+            return;
+        }
+        wal.compact(out -> genresByFilm.forEach((filmId, genreIds) -> out.accept(record(filmId, genreIds))));
+    }
+
+    @PreDestroy
+    public void close() {
+        wal.close();
+    }
+
+    private void append(int filmId, List<Genre> genres) {
+        wal.mutate(() -> {
+            synchronized (locks.forKey(filmId)) {
+                int[] genreIds = genresByFilm.getOrDefault(filmId, SortedIntArrays.EMPTY);
+                for (Genre genre : genres) {
+                    genreIds = SortedIntArrays.insert(genreIds, genre.getId());
+                }
+                store(filmId, genreIds);
+            }
+        });
+    }
+
+    private void store(int filmId, int[] genreIds) {
+        wal.write(record(filmId, genreIds));
+        put(filmId, genreIds);
+    }
+
+    private static String record(int filmId, int[] genreIds) {
+        return "G " + filmId + " " + Arrays.stream(genreIds)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+    }
+
+    private void put(int filmId, int[] genreIds) {
+        if (genreIds.length == 0) {
+            genresByFilm.remove(filmId);
+        } else {
+            genresByFilm.put(filmId, genreIds);
+        }
+    }
+
+    private void apply(String record) {
+        String[] parts = record.split(" ", -1);
+        int[] genreIds = parts[2].isEmpty()
+                ? SortedIntArrays.EMPTY
+                : Arrays.stream(parts[2].split(",")).mapToInt(Integer::parseInt).toArray();
+        put(Integer.parseInt(parts[1]), genreIds);
+    }
+
+    private List<Genre> toGenres(int[] genreIds) {
+        return referenceStorage.findGenresByIds(Arrays.stream(genreIds).boxed().toList());
+    }
+}
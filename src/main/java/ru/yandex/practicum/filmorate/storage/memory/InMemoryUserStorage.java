@@ -0,0 +1,367 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserField;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+
+/**
+ * Хранилище пользователей в памяти для профиля memstore. Пользователи лежат в упорядоченной по ID
+ * неблокирующей карте, дружба - в {@link FriendGraphIndex}. Каждая запись сначала попадает в журнал:
+ * {@code U <json>} - создание или изменение пользователя, {@code A/R <userId> <friendId>} - добавление
+ * и удаление друга. Журнал периодически сворачивается в снимок из записей {@code U} и {@code A},
+ * при старте состояние восстанавливается из снимка и журнала. Индекс логинов нужен импорту с обновлением по логину.
+ */
+@Repository
+@Profile("memstore")
+@Timed(value = "filmorate.storage", description = "Storage method execution time")
+@Slf4j
+public class InMemoryUserStorage implements UserStorage {
+    private final ConcurrentSkipListMap<Integer, User> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Integer> idsByLogin = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final LockStripes locks = new LockStripes(64);
+    private final LockStripes loginLocks = new LockStripes(64);
+    private final FriendGraphIndex friendGraphIndex;
+    private final ObjectMapper objectMapper;
+    private final WriteAheadLog wal;
+
+    public InMemoryUserStorage(FriendGraphIndex friendGraphIndex, ObjectMapper objectMapper,
+                               WriteAheadLogFactory walFactory) {
+        this.friendGraphIndex = friendGraphIndex;
+        this.objectMapper = objectMapper;
+        this.wal = walFactory.open("users");
+        wal.recover(this::apply);
+        log.info("In-memory user storage recovered {} users", users.size());
+    }
+
+    @Override
+    public User create(User user) {
+        user.setId(lastId.incrementAndGet());
+        String record = "U " + toJson(user);
+        wal.mutate(() -> {
+            synchronized (locks.forKey(user.getId())) {
+                wal.write(record);
+                put(user);
+            }
+        });
+        wal.commit();
+        log.info("User created: {}", user);
+        return user;
+    }
+
+    @Override
+    public User update(User user) {
+        String record = "U " + toJson(user);
+        wal.mutate(() -> {
+            synchronized (locks.forKey(user.getId())) {
+                if (!users.containsKey(user.getId())) {
+                    throw new NotFoundException("User with ID " + user.getId() + " not found");
+                }
+                wal.write(record);
+                put(user);
+            }
+        });
+        wal.commit();
+        log.info("User updated: {}", user);
+        return user;
+    }
+
+    /**
+     * Существующий пользователь ищется по индексу логинов и меняется под блокировкой своего ID, как в
+     * {@link #update(User)}. Новый логин создаётся под отдельной блокировкой логина, чтобы параллельный импорт
+     * не создал его второй раз. Коммит журнала - один на пакет.
+     */
+    @Override
+    public boolean[] upsertAllByLogin(List<User> users) {
+        boolean[] created = new boolean[users.size()];
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            int index = i;
+            wal.mutate(() -> {
+                created[index] = upsertByLogin(user);
+            });
+        }
+        wal.commit();
+        log.info("Imported {} users", users.size());
+        return created;
+    }
+
+    @Override
+    public Optional<User> findUserById(int id) {
+        return Optional.ofNullable(users.get(id)).map(InMemoryUserStorage::copy);
+    }
+
+    @Override
+    public Set<Integer> findExistingIds(Collection<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        for (Integer id : ids) {
+            if (users.containsKey(id)) {
+                existing.add(id);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public List<User> findUsersByIds(List<Integer> ids) {
+        List<User> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                result.add(copy(user));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<User> findAll() {
+        return users.values().stream().map(InMemoryUserStorage::copy).toList();
+    }
+
+    @Override
+    public List<User> findPage(int afterId, int limit) {
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(InMemoryUserStorage::copy)
+                .toList();
+    }
+
+    /**
+     * Поля читаются из хранимого пользователя без копирования.
+     */
+    @Override
+    public List<Map<String, Object>> findPageFields(int afterId, int limit, Set<UserField> fields) {
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(user -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put(UserField.ID.getKey(), user.getId());
+                    for (UserField field : fields) {
+                        switch (field) {
+                            case EMAIL -> row.put(field.getKey(), user.getEmail());
+                            case LOGIN -> row.put(field.getKey(), user.getLogin());
+                            case NAME -> row.put(field.getKey(), user.getName());
+                            case BIRTHDAY -> row.put(field.getKey(), user.getBirthday());
+                            default -> {
+                            }
+                        }
+                    }
+                    return row;
+                })
+                .toList();
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+        users.values().forEach(user -> consumer.accept(copy(user)));
+    }
+
+    @Override
+    public void streamFriendships(Consumer<Friendship> consumer) {
+        users.keySet().forEach(userId -> {
+            for (int friendId : friendGraphIndex.getFriendIds(userId)) {
+                consumer.accept(new Friendship(userId, friendId));
+            }
+        });
+    }
+
+    @Override
+    public boolean addFriend(int userId, int friendId) {
+        validateUserExists(userId);
+        validateUserExists(friendId);
+        boolean changed = wal.mutate(() -> {
+            synchronized (locks.forKey(userId)) {
+                if (Arrays.binarySearch(friendGraphIndex.getFriendIds(userId), friendId) >= 0) {
+                    return false;
+                }
+                wal.write("A " + userId + " " + friendId);
+                friendGraphIndex.addFriend(userId, friendId);
+                return true;
+            }
+        });
+        wal.commit();
+        if (changed) {
+            log.info("User {} added friend {}", userId, friendId);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeFriend(int userId, int friendId) {
+        validateUserExists(userId);
+        validateUserExists(friendId);
+        boolean changed = wal.mutate(() -> {
+            synchronized (locks.forKey(userId)) {
+                if (Arrays.binarySearch(friendGraphIndex.getFriendIds(userId), friendId) < 0) {
+                    return false;
+                }
+                wal.write("R " + userId + " " + friendId);
+                friendGraphIndex.removeFriend(userId, friendId);
+                return true;
+            }
+        });
+        wal.commit();
+        if (changed) {
+            log.info("User {} removed friend {}", userId, friendId);
+        }
+        return changed;
+    }
+
+    @Override
+    public List<User> getFriends(int userId) {
+        return findUsersByIds(Arrays.stream(friendGraphIndex.getFriendIds(userId)).boxed().toList());
+    }
+
+    @Override
+    public List<User> getCommonFriends(int userId, int otherUserId) {
+        return findUsersByIds(
+                Arrays.stream(friendGraphIndex.getCommonFriendIds(userId, otherUserId)).boxed().toList());
+    }
+
+    @Override
+    public long getFriendGraphVersion() {
+        return friendGraphIndex.getVersion();
+    }
+
+    /**
+     * Сворачивает журнал в снимок текущих пользователей и дружбы, если с прошлого снимка были записи.
+     */
+    @Scheduled(initialDelayString = "${filmorate.memstore.snapshot-interval-ms:600000}",
+            fixedDelayString = "${filmorate.memstore.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        if (wal.size() == 0) {
+            return;
+        }
+        wal.compact(out -> {
+            users.values().forEach(user -> out.accept("U " + toJson(user)));
+            users.keySet().forEach(userId -> {
+                for (int friendId : friendGraphIndex.getFriendIds(userId)) {
+                    out.accept("A " + userId + " " + friendId);
+                }
+            });
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        wal.close();
+    }
+
+    /**
+     * Индекс логинов указывает на пользователя с меньшим ID, если логин повторяется.
+     */
+    /**
+     * Блокировка логина всегда берётся раньше блокировки ID, обратного порядка нет.
+     */
+    private boolean upsertByLogin(User user) {
+        while (true) {
+            Integer id = idsByLogin.get(user.getLogin());
+            if (id == null) {
+                synchronized (loginLocks.forKey(user.getLogin().hashCode())) {
+                    if (idsByLogin.containsKey(user.getLogin())) {
+                        continue;
+                    }
+                    user.setId(lastId.incrementAndGet());
+                    synchronized (locks.forKey(user.getId())) {
+                        wal.write("U " + toJson(user));
+                        put(user);
+                    }
+                    return true;
+                }
+            }
+            synchronized (locks.forKey(id)) {
+                // Пока ID искался без блокировки, пользователь мог сменить логин
+                if (id.equals(idsByLogin.get(user.getLogin()))) {
+                    user.setId(id);
+                    wal.write("U " + toJson(user));
+                    put(user);
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void put(User user) {
+        User previous = users.put(user.getId(), copy(user));
+        if (previous != null && !previous.getLogin().equals(user.getLogin())) {
+            idsByLogin.remove(previous.getLogin(), user.getId());
+        }
+        idsByLogin.merge(user.getLogin(), user.getId(), Math::min);
+        lastId.accumulateAndGet(user.getId(), Math::max);
+    }
+
+    private void apply(String record) {
+        String[] parts = record.split(" ", 2);
+        switch (parts[0]) {
+            case "U" -> put(fromJson(parts[1]));
+            case "A" -> {
+                String[] ids = parts[1].split(" ");
+                friendGraphIndex.addFriend(Integer.parseInt(ids[0]), Integer.parseInt(ids[1]));
+            }
+            case "R" -> {
+                String[] ids = parts[1].split(" ");
+                friendGraphIndex.removeFriend(Integer.parseInt(ids[0]), Integer.parseInt(ids[1]));
+            }
+            default -> throw new IllegalStateException("Unknown user log record: " + record);
+        }
+    }
+
+    private void validateUserExists(int userId) {
+        if (!users.containsKey(userId)) {
+            throw new NotFoundException("User with ID " + userId + " not found");
+        }
+    }
+
+    private String toJson(User user) {
+        try {
+            return objectMapper.writeValueAsString(user);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize user " + user.getId(), e);
+        }
+    }
+
+    private User fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, User.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot deserialize user log record", e);
+        }
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        return copy;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+/**
+ * Фиксированный набор мониторов, выбираемых по ключу: записи с разными ключами почти никогда не ждут друг друга,
+ * а записи с одним ключом упорядочены одинаково в памяти и в журнале.
+ */
+final class LockStripes {
+    private final Object[] locks;
+
+    LockStripes(int stripes) {
+        locks = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    Object forKey(int key) {
+        return locks[Math.floorMod(key, locks.length)];
+    }
+}
@@ -0,0 +1,341 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Журнал упреждающей записи: одна текстовая запись на строку, записи только дописываются в конец файла.
+ * Хранилище пишет запись в журнал и меняет данные в памяти внутри {@link #mutate(Runnable)},
+ * а перед ответом клиенту вызывает {@link #commit()}, который по политике {@link SyncPolicy}
+ * ждёт сброса на диск. Одновременные {@link #commit()} объединяются в один {@code fsync}.
+ *
+ * <p>{@link #compact(Consumer)} переключает запись на новый файл, сохраняет снимок состояния и удаляет старый
+ * файл. Восстановление читает снимок, незавершённый предыдущий файл и текущий файл по порядку, поэтому
+ * применение записей должно быть идемпотентным: повтор записи не меняет уже достигнутое ею состояние.
+ *
+ * <p>Ошибка фонового сброса при {@link SyncPolicy#INTERVAL} не останавливает сброс: она пишется в лог
+ * и считается метрикой {@code filmorate.memstore.wal.sync.failures}, следующая попытка будет через интервал.
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+    public enum SyncPolicy {
+        /** {@link #commit()} ждёт {@code fsync}, одновременные коммиты делят один сброс. */
+        ALWAYS,
+        /** Журнал сбрасывается фоновым потоком раз в интервал, потеря при сбое ограничена интервалом. */
+        INTERVAL,
+        /** Сброс оставлен операционной системе. */
+        NEVER
+    }
+
+    private final Path logPath;
+    private final Path previousPath;
+    private final Path snapshotPath;
+    private final SyncPolicy syncPolicy;
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    private final Object syncLock = new Object();
+    private final Object compactLock = new Object();
+    private final ScheduledExecutorService flusher;
+    private final Counter syncFailures;
+    private FileChannel channel;
+    private long writtenBytes;
+    private long syncedBytes;
+
+    public WriteAheadLog(Path dir, String name, SyncPolicy syncPolicy, Duration syncInterval,
+                         MeterRegistry meterRegistry) {
+        this.logPath = dir.resolve(name + ".wal");
+        this.previousPath = dir.resolve(name + ".wal.prev");
+        this.snapshotPath = dir.resolve(name + ".snapshot");
+        this.syncPolicy = syncPolicy;
+        this.syncFailures = Counter.builder("filmorate.memstore.wal.sync.failures")
+                .description("Failed background syncs of the write-ahead log")
+                .tag("log", name)
+                .register(meterRegistry);
+        try {
+            Files.createDirectories(dir);
+            this.channel = open(logPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log " + logPath, e);
+        }
+        if (syncPolicy == SyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-flusher-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalNanos = syncInterval.toNanos();
+            flusher.scheduleWithFixedDelay(this::syncSafely, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Передаёт в {@code handler} записи снимка и журнала по порядку и возвращает их количество.
+     * Оборванная при сбое последняя строка текущего журнала отбрасывается. Вызывается один раз, до первой записи.
+     */
+    public int recover(Consumer<String> handler) {
+        int records = 0;
+        try {
+            for (Path path : new Path[] { snapshotPath, previousPath }) {
+                if (Files.exists(path)) {
+                    try (FileChannel readOnly = FileChannel.open(path, StandardOpenOption.READ)) {
+                        records += read(readOnly, path, handler, false);
+                    }
+                }
+            }
+            records += read(channel, logPath, handler, true);
+            writtenBytes = channel.position();
+            syncedBytes = writtenBytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot recover write-ahead log " + logPath, e);
+        }
+        log.info("Recovered {} records from {}", records, logPath);
+        return records;
+    }
+
+    /**
+     * Выполняет запись в журнал и изменение данных в памяти так, чтобы компактация не оказалась между ними.
+     */
+    public void mutate(Runnable mutation) {
+        mutate(() -> {
+            mutation.run();
+            return null;
+        });
+    }
+
+    public <T> T mutate(Supplier<T> mutation) {
+        compactionLock.readLock().lock();
+        try {
+            return mutation.get();
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Дописывает запись без сброса на диск. Вызывается внутри {@link #mutate(Runnable)}.
+     */
+    public synchronized void write(String record) {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(record + "\n");
+        try {
+            while (buffer.hasRemaining()) {
+                writtenBytes += channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write to write-ahead log " + logPath, e);
+        }
+    }
+
+    /**
+     * Делает записанное надёжным согласно политике: для {@link SyncPolicy#ALWAYS} ждёт сброса на диск.
+     */
+    public void commit() {
+        if (syncPolicy == SyncPolicy.ALWAYS) {
+            sync();
+        }
+    }
+
+    /**
+     * Сбрасывает на диск всё записанное к моменту вызова. Если другой поток уже сбросил эти данные,
+     * повторного {@code fsync} не будет.
+     */
+    public void sync() {
+        long target;
+        synchronized (this) {
+            target = writtenBytes;
+        }
+        synchronized (syncLock) {
+            if (syncedBytes >= target) {
+                return;
+            }
+            FileChannel current;
+            long covered;
+            synchronized (this) {
+                current = channel;
+                covered = writtenBytes;
+            }
+            try {
+                current.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot sync write-ahead log " + logPath, e);
+            }
+            syncedBytes = covered;
+        }
+    }
+
+    /**
+     * Переключает запись на новый файл, сохраняет снимок, выданный {@code snapshot}, и удаляет предыдущий файл.
+     * Снимок пишется без блокировки записей, поэтому может частично включать изменения из нового файла.
+     */
+    public void compact(Consumer<Consumer<String>> snapshot) {
+        synchronized (compactLock) {
+            compactionLock.writeLock().lock();
+            try {
+                rotate();
+            } finally {
+                compactionLock.writeLock().unlock();
+            }
+
+            Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            int records = 0;
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                BufferedWriter writer = new BufferedWriter(
+                        new OutputStreamWriter(Channels.newOutputStream(out), StandardCharsets.UTF_8));
+                RecordCounter counter = new RecordCounter(writer);
+                snapshot.accept(counter);
+                writer.flush();
+                out.force(true);
+                records = counter.records;
+                Files.move(temporary, snapshotPath, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                Files.deleteIfExists(previousPath);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write snapshot " + snapshotPath, e);
+            }
+            log.info("Compacted {} into a snapshot of {} records", logPath, records);
+        }
+    }
+
+    /**
+     * Размер текущего файла журнала в байтах, после компактации начинается с нуля.
+     */
+    public synchronized long size() {
+        return writtenBytes;
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        sync();
+        synchronized (this) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot close write-ahead log " + logPath, e);
+            }
+        }
+    }
+
+    private void rotate() {
+        synchronized (syncLock) {
+            synchronized (this) {
+                try {
+                    channel.force(false);
+                    channel.close();
+                    if (Files.exists(previousPath)) {
+                        try (FileChannel previous = FileChannel.open(previousPath, StandardOpenOption.WRITE,
+                                StandardOpenOption.APPEND);
+                             FileChannel current = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                            current.transferTo(0, current.size(), previous);
+                            previous.force(false);
+                        }
+                        Files.delete(logPath);
+                    } else {
+                        Files.move(logPath, previousPath, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    channel = open(logPath);
+                    writtenBytes = 0;
+                    syncedBytes = 0;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot rotate write-ahead log " + logPath, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Исключение из задачи планировщика отменило бы все следующие сбросы, поэтому оно здесь перехватывается.
+     */
+    private void syncSafely() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            syncFailures.increment();
+            log.error("Background sync of {} failed, retrying in the next interval", logPath, e);
+        }
+    }
+
+    private int read(FileChannel source, Path path, Consumer<String> handler, boolean truncateTornTail)
+            throws IOException {
+        int records = 0;
+        long validLength = 0;
+        InputStream in = new BufferedInputStream(Channels.newInputStream(source.position(0)));
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != '\n') {
+                line.write(b);
+                continue;
+            }
+            handler.accept(line.toString(StandardCharsets.UTF_8));
+            validLength += line.size() + 1;
+            records++;
+            line.reset();
+        }
+        if (line.size() > 0) {
+            log.warn("Discarding torn record of {} bytes at the end of {}", line.size(), path);
+            if (truncateTornTail) {
+                source.truncate(validLength);
+            }
+        }
+        source.position(validLength);
+        return records;
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private static final class RecordCounter implements Consumer<String> {
+        private final BufferedWriter writer;
+        private int records;
+
+        private RecordCounter(BufferedWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void accept(String record) {
+            try {
+                writer.write(record);
+                writer.write('\n');
+                records++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.storage.memory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Открывает журналы хранилищ профиля memstore в общем каталоге с общей политикой сброса на диск.
+ */
+@Component
+@Profile("memstore")
+public class WriteAheadLogFactory {
+    private final Path dir;
+    private final WriteAheadLog.SyncPolicy syncPolicy;
+    private final Duration syncInterval;
+    private final MeterRegistry meterRegistry;
+
+    public WriteAheadLogFactory(@Value("${filmorate.memstore.wal-dir:./db/wal}") Path dir,
+                                @Value("${filmorate.memstore.sync-policy:ALWAYS}")
+                                WriteAheadLog.SyncPolicy syncPolicy,
+                                @Value("${filmorate.memstore.sync-interval:100ms}") Duration syncInterval,
+                                MeterRegistry meterRegistry) {
+        this.dir = dir;
+        this.syncPolicy = syncPolicy;
+        this.syncInterval = syncInterval;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public WriteAheadLog open(String name) {
+        return new WriteAheadLog(dir, name, syncPolicy, syncInterval, meterRegistry);
+    }
+}
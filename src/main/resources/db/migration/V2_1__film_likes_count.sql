@@ -0,0 +1,11 @@
+-- Счётчики лайков фильмов. Идёт после базовой версии 2, поэтому применяется и к базам,
+-- созданным через schema.sql, а в базах, где таблица уже есть, лишь дозаполняет пропущенные фильмы.
+CREATE TABLE IF NOT EXISTS film_likes_count (
+    film_id INTEGER PRIMARY KEY REFERENCES films(film_id),
+    likes_count INTEGER NOT NULL DEFAULT 0
+);
+
+INSERT INTO film_likes_count (film_id, likes_count)
+SELECT f.film_id, (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)
+FROM films f
+WHERE NOT EXISTS (SELECT 1 FROM film_likes_count c WHERE c.film_id = f.film_id);
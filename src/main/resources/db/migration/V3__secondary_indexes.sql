@@ -0,0 +1,7 @@
+-- Обратные связи: лайки пользователя, подписчики пользователя, фильмы рейтинга и жанра.
+-- Первичные ключи likes и friends покрывают только поиск по первой колонке.
+CREATE INDEX IF NOT EXISTS idx_likes_user_film ON likes (user_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_friends_friend_user ON friends (friend_id, user_id);
+CREATE INDEX IF NOT EXISTS idx_films_mpa ON films (mpa_id);
+CREATE INDEX IF NOT EXISTS idx_film_genres_genre ON film_genres (genre_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_film_likes_count_likes ON film_likes_count (likes_count DESC, film_id);
@@ -0,0 +1,2 @@
+-- Импорт пользователей ищет существующие записи по логину.
+CREATE INDEX IF NOT EXISTS idx_users_login ON users (login);
@@ -1,11 +1,19 @@
 package ru.yandex.practicum.filmorate;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import org.junit.jupiter.api.DisplayName;
@@ -16,6 +24,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import ru.yandex.practicum.filmorate.util.TestJsonUtils;
 
@@ -77,6 +86,40 @@ class FilmControllerIntegrationTest {
                                 .andExpect(status().isNotFound());
         }
 
+        @Test
+        @DisplayName("Should replace film genres within SQL budget")
+        void shouldReplaceFilmGenres() throws Exception {
+                String filmJson = TestJsonUtils.readJsonFromFile("json/valid-film.json");
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(filmJson.replace("\"mpa\"", "\"genres\": [{\"id\": 1}, {\"id\": 2}], \"mpa\"")))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(put("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(filmJson.replace("\"mpa\"", "\"id\": 1, \"genres\": [{\"id\": 2}, {\"id\": 3}], \"mpa\"")))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.genres[*].id").value(contains(2, 3)));
+        }
+
+        @Test
+        @DisplayName("Should not match ETag of a missing film after the film is created")
+        void shouldNotReuseMissingFilmETagAfterCreate() throws Exception {
+                String etag = mockMvc.perform(get("/films/1"))
+                                .andExpect(status().isNotFound())
+                                .andExpect(header().exists("ETag"))
+                                .andReturn().getResponse().getHeader("ETag");
+
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-film.json")))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(get("/films/1").header("If-None-Match", etag))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.id").value(1));
+        }
+
         @Test
         @DisplayName("Should get film by id")
         void shouldGetFilmById() throws Exception {
@@ -96,6 +139,28 @@ class FilmControllerIntegrationTest {
                                 .andExpect(jsonPath("$.name").value("Test Film"));
         }
 
+        @Test
+        @DisplayName("Should get film by id with mpa and genres")
+        void shouldGetFilmByIdWithGenres() throws Exception {
+                String filmJson = TestJsonUtils.readJsonFromFile("json/film-with-genres.json");
+                String response = mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(filmJson))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+
+                int filmId = Integer
+                                .parseInt(response.substring(response.indexOf("\"id\":") + 5, response.indexOf(",")));
+
+                mockMvc.perform(get("/films/" + filmId))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.mpa.name").value("PG-13"))
+                                .andExpect(jsonPath("$.genres.length()").value(2))
+                                .andExpect(jsonPath("$.genres[0].id").value(1))
+                                .andExpect(jsonPath("$.genres[0].name").value("Комедия"))
+                                .andExpect(jsonPath("$.genres[1].id").value(4));
+        }
+
         @Test
         @DisplayName("Should return 404 when film not found")
         void shouldReturn404WhenFilmNotFound() throws Exception {
@@ -171,4 +236,192 @@ class FilmControllerIntegrationTest {
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$[0].id").value(filmId));
         }
+
+        @Test
+        @DisplayName("Should return films page with genres")
+        void shouldReturnFilmsPageWithGenres() throws Exception {
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-film.json")))
+                                .andExpect(status().isOk());
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/film-with-genres.json")))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(get("/films").param("after_id", "1").param("limit", "10"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(1))
+                                .andExpect(jsonPath("$[0].id").value(2))
+                                .andExpect(jsonPath("$[0].genres.length()").value(2));
+        }
+
+        @Test
+        @DisplayName("Should stream films with genres as NDJSON")
+        void shouldStreamFilmsAsNdjson() throws Exception {
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/film-with-genres.json")))
+                                .andExpect(status().isOk());
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-film.json")))
+                                .andExpect(status().isOk());
+
+                MvcResult result = mockMvc.perform(get("/films").accept(MediaType.APPLICATION_NDJSON))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                String body = mockMvc.perform(asyncDispatch(result))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+
+                String[] lines = body.split("\n");
+                assertEquals(2, lines.length);
+                assertTrue(lines[0].contains("\"genres\":[{\"id\":1,"));
+                assertTrue(lines[1].contains("\"genres\":[]"));
+        }
+
+        @Test
+        @DisplayName("Should import valid films in bulk and report rejected ones")
+        void shouldImportFilmsInBulk() throws Exception {
+                mockMvc.perform(post("/films/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/films-bulk.json")))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.imported").value(2))
+                                .andExpect(jsonPath("$.rejected").value(2))
+                                .andExpect(jsonPath("$.errors[0].index").value(1))
+                                .andExpect(jsonPath("$.errors[0].error").value("Film name cannot be empty"))
+                                .andExpect(jsonPath("$.errors[1].index").value(3))
+                                .andExpect(jsonPath("$.errors[1].error").value("Genre with ID 999 not found"));
+
+                mockMvc.perform(get("/films"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(2))
+                                .andExpect(jsonPath("$[0].name").value("First"))
+                                .andExpect(jsonPath("$[0].mpa.name").value("R"))
+                                .andExpect(jsonPath("$[0].genres.length()").value(2))
+                                .andExpect(jsonPath("$[1].name").value("Second"))
+                                .andExpect(jsonPath("$[1].genres.length()").value(0));
+        }
+
+        @Test
+        @DisplayName("Should return only requested film fields")
+        void shouldReturnRequestedFilmFields() throws Exception {
+                mockMvc.perform(post("/films/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/films-bulk.json")))
+                                .andExpect(status().isOk());
+                mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                                .andExpect(status().isOk());
+                mockMvc.perform(put("/films/2/like/1"))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(get("/films").param("fields", "name,likes"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(2))
+                                .andExpect(jsonPath("$[0].id").value(1))
+                                .andExpect(jsonPath("$[0].name").value("First"))
+                                .andExpect(jsonPath("$[0].likes").value(0))
+                                .andExpect(jsonPath("$[0].description").doesNotExist())
+                                .andExpect(jsonPath("$[0].genres").doesNotExist())
+                                .andExpect(jsonPath("$[1].likes").value(1));
+
+                mockMvc.perform(get("/films").param("fields", "mpa,genres").param("limit", "1"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(1))
+                                .andExpect(jsonPath("$[0].mpa.name").value("R"))
+                                .andExpect(jsonPath("$[0].genres.length()").value(2))
+                                .andExpect(jsonPath("$[0].name").doesNotExist());
+
+                mockMvc.perform(get("/films").param("fields", "id,rating"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.error").value("Unknown film field: rating"));
+                mockMvc.perform(get("/films").param("fields", "name").param("limit", "1001"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.error").value("limit must be between 1 and 1000"));
+        }
+
+        @Test
+        @DisplayName("Should reject bulk import body that is not a JSON array")
+        void shouldRejectMalformedBulkImport() throws Exception {
+                mockMvc.perform(post("/films/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-film.json")))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(post("/films/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[" + TestJsonUtils.readJsonFromFile("json/valid-film.json")
+                                                + ", {\"name\": \"Broken\", \"duration\": \"long\"}]"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.imported").value(1))
+                                .andExpect(jsonPath("$.aborted").value(true))
+                                .andExpect(jsonPath("$.errors[0].index").value(1))
+                                .andExpect(jsonPath("$.errors[0].error")
+                                                .value(startsWith("Malformed element at index 1")));
+
+                mockMvc.perform(get("/films"))
+                                .andExpect(jsonPath("$.length()").value(1));
+        }
+
+        @Test
+        @DisplayName("Should answer 304 for unchanged film and 200 after update")
+        void shouldSupportConditionalFilmRequests() throws Exception {
+                String response = mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/film-with-genres.json")))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+                int filmId = Integer
+                                .parseInt(response.substring(response.indexOf("\"id\":") + 5, response.indexOf(",")));
+
+                String etag = mockMvc.perform(get("/films/" + filmId))
+                                .andExpect(status().isOk())
+                                .andExpect(header().exists("ETag"))
+                                .andReturn().getResponse().getHeader("ETag");
+
+                mockMvc.perform(get("/films/" + filmId).header("If-None-Match", etag))
+                                .andExpect(status().isNotModified())
+                                .andExpect(content().string(""));
+
+                mockMvc.perform(put("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(response.replace("\"duration\":", "\"duration\":1")))
+                                .andExpect(status().isOk());
+
+                String newEtag = mockMvc.perform(get("/films/" + filmId).header("If-None-Match", etag))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.genres.length()").value(2))
+                                .andReturn().getResponse().getHeader("ETag");
+                assertNotEquals(etag, newEtag);
+        }
+
+        @Test
+        @DisplayName("Should change popular films ETag after like")
+        void shouldChangePopularFilmsETagAfterLike() throws Exception {
+                mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                                .andExpect(status().isOk());
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-film.json")))
+                                .andExpect(status().isOk());
+
+                String etag = mockMvc.perform(get("/films/popular?count=5"))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getHeader("ETag");
+                mockMvc.perform(get("/films/popular?count=5").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+
+                mockMvc.perform(put("/films/1/like/1"))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(get("/films/popular?count=5").header("If-None-Match", etag))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$[0].id").value(1));
+        }
 }
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -7,15 +8,31 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.impl.FilmLikesCountMaintainer;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
 import ru.yandex.practicum.filmorate.util.TestJsonUtils;
 
 @SpringBootTest
@@ -26,6 +43,27 @@ class FilmLikesTest {
         @Autowired
         private MockMvc mockMvc;
 
+        @Autowired
+        private FilmStorage filmStorage;
+
+        @Autowired
+        private PopularFilmsIndex popularFilmsIndex;
+
+        @Autowired
+        private UserLikesIndex userLikesIndex;
+
+        @Autowired
+        private TransactionTemplate transactionTemplate;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        private FilmDbStorage filmDbStorage;
+
+        @Autowired
+        private FilmLikesCountMaintainer filmLikesCountMaintainer;
+
         @Test
         @DisplayName("Should be able to get film by id")
         void shouldGetFilmById() throws Exception {
@@ -77,6 +115,8 @@ class FilmLikesTest {
                                 .parseInt(filmResponse.substring(filmResponse.indexOf("\"id\":") + 5,
                                                 filmResponse.indexOf(",")));
 
+                mockMvc.perform(put("/films/" + filmId + "/like/" + userId))
+                                .andExpect(status().isOk());
                 mockMvc.perform(put("/films/" + filmId + "/like/" + userId))
                                 .andExpect(status().isOk());
 
@@ -189,4 +229,214 @@ class FilmLikesTest {
                                 .andExpect(jsonPath("$[0].id").value(filmId2))
                                 .andExpect(jsonPath("$[1].id").value(filmId1));
         }
+
+        @Test
+        @DisplayName("Should apply batch of like operations")
+        void shouldApplyBatchOfLikeOperations() throws Exception {
+                String filmJson = TestJsonUtils.readJsonFromFile("json/valid-film.json");
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(filmJson))
+                                .andExpect(status().isOk());
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(filmJson))
+                                .andExpect(status().isOk());
+
+                String userJson = TestJsonUtils.readJsonFromFile("json/valid-user.json");
+                mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(userJson))
+                                .andExpect(status().isOk());
+                mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(userJson))
+                                .andExpect(status().isOk());
+
+                String batchJson = "[\n" +
+                                "  {\"filmId\": 2, \"userId\": 1, \"op\": \"LIKE\"},\n" +
+                                "  {\"filmId\": 2, \"userId\": 2, \"op\": \"LIKE\"},\n" +
+                                "  {\"filmId\": 2, \"userId\": 2, \"op\": \"LIKE\"},\n" +
+                                "  {\"filmId\": 1, \"userId\": 1, \"op\": \"LIKE\"},\n" +
+                                "  {\"filmId\": 1, \"userId\": 1, \"op\": \"UNLIKE\"},\n" +
+                                "  {\"filmId\": 999, \"userId\": 1, \"op\": \"LIKE\"},\n" +
+                                "  {\"filmId\": 1, \"userId\": 999, \"op\": \"LIKE\"}\n" +
+                                "]";
+                mockMvc.perform(post("/films/likes/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(batchJson))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$[0].status").value("APPLIED"))
+                                .andExpect(jsonPath("$[1].status").value("APPLIED"))
+                                .andExpect(jsonPath("$[2].status").value("UNCHANGED"))
+                                .andExpect(jsonPath("$[3].status").value("APPLIED"))
+                                .andExpect(jsonPath("$[4].status").value("APPLIED"))
+                                .andExpect(jsonPath("$[5].status").value("FILM_NOT_FOUND"))
+                                .andExpect(jsonPath("$[6].status").value("USER_NOT_FOUND"));
+
+                mockMvc.perform(get("/films/popular"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$[0].id").value(2))
+                                .andExpect(jsonPath("$[1].id").value(1));
+
+                mockMvc.perform(delete("/films/2/like/1"))
+                                .andExpect(status().isOk());
+        }
+
+        @Test
+        @DisplayName("Should recommend films liked by users with similar likes")
+        void shouldRecommendFilms() throws Exception {
+                String filmJson = TestJsonUtils.readJsonFromFile("json/valid-film.json");
+                for (int i = 0; i < 3; i++) {
+                        mockMvc.perform(post("/films")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(filmJson))
+                                        .andExpect(status().isOk());
+                }
+                String userJson = TestJsonUtils.readJsonFromFile("json/valid-user.json");
+                for (int i = 0; i < 2; i++) {
+                        mockMvc.perform(post("/users")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(userJson))
+                                        .andExpect(status().isOk());
+                }
+
+                mockMvc.perform(put("/films/1/like/1"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(put("/films/1/like/2"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(put("/films/3/like/2"))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(get("/users/1/recommended-films"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(1))
+                                .andExpect(jsonPath("$[0].id").value(3))
+                                .andExpect(jsonPath("$[0].mpa.id").exists());
+
+                mockMvc.perform(get("/users/999/recommended-films"))
+                                .andExpect(status().isNotFound());
+        }
+
+        @Test
+        @DisplayName("Should not change like indexes when transaction is rolled back")
+        void shouldNotChangeLikeIndexesOnRollback() throws Exception {
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-film.json")))
+                                .andExpect(status().isOk());
+                mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                                .andExpect(status().isOk());
+
+                transactionTemplate.executeWithoutResult(tx -> {
+                        filmStorage.addLike(1, 1);
+                        tx.setRollbackOnly();
+                });
+
+                assertEquals(0, popularFilmsIndex.getLikes(1));
+                assertEquals(0, userLikesIndex.getLikedFilmIds(1).length);
+                mockMvc.perform(put("/films/1/like/1"))
+                                .andExpect(status().isOk());
+                assertEquals(1, popularFilmsIndex.getLikes(1));
+        }
+
+        @Test
+        @DisplayName("Should count concurrent retries of the same like once")
+        void shouldCountConcurrentLikeRetriesOnce() throws Exception {
+                mockMvc.perform(post("/films")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-film.json")))
+                                .andExpect(status().isOk());
+                mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                                .andExpect(status().isOk());
+
+                int threads = 8;
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                        for (int round = 0; round < 20; round++) {
+                                CountDownLatch start = new CountDownLatch(1);
+                                List<Future<Integer>> statuses = new ArrayList<>();
+                                for (int i = 0; i < threads; i++) {
+                                        boolean batch = i % 2 == 0;
+                                        Callable<Integer> request = () -> {
+                                                start.await();
+                                                return (batch
+                                                                ? mockMvc.perform(post("/films/likes/batch")
+                                                                                .contentType(MediaType.APPLICATION_JSON)
+                                                                                .content("[{\"filmId\":1,\"userId\":1,"
+                                                                                                + "\"op\":\"LIKE\"}]"))
+                                                                : mockMvc.perform(put("/films/1/like/1")))
+                                                                .andReturn().getResponse().getStatus();
+                                        };
+                                        statuses.add(executor.submit(request));
+                                }
+                                start.countDown();
+                                for (Future<Integer> status : statuses) {
+                                        assertEquals(200, status.get());
+                                }
+
+                                assertEquals(1, popularFilmsIndex.getLikes(1));
+                                assertEquals(1, jdbcTemplate.queryForObject(
+                                                "SELECT likes_count FROM film_likes_count WHERE film_id = 1",
+                                                Integer.class));
+                                mockMvc.perform(delete("/films/1/like/1"))
+                                                .andExpect(status().isOk());
+                        }
+                } finally {
+                        executor.shutdownNow();
+                }
+        }
+
+        @Test
+        @DisplayName("Should keep popular films index in sync when consistency check races with likes")
+        void shouldNotLoseLikesWhenConsistencyCheckRunsConcurrently() throws Exception {
+                int films = 5;
+                int users = 20;
+                for (int i = 0; i < films; i++) {
+                        mockMvc.perform(post("/films")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(TestJsonUtils.readJsonFromFile("json/valid-film.json")))
+                                        .andExpect(status().isOk());
+                }
+                for (int i = 0; i < users; i++) {
+                        mockMvc.perform(post("/users")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                                        .andExpect(status().isOk());
+                }
+
+                AtomicBoolean running = new AtomicBoolean(true);
+                ExecutorService executor = Executors.newFixedThreadPool(4);
+                List<Future<?>> writers = new ArrayList<>();
+                try {
+                        for (int t = 0; t < 4; t++) {
+                                int seed = t;
+                                writers.add(executor.submit(() -> {
+                                        for (int i = seed; running.get(); i += 4) {
+                                                int filmId = 1 + i % films;
+                                                int userId = 1 + (i / films) % users;
+                                                if (!filmStorage.addLike(filmId, userId)) {
+                                                        filmStorage.removeLike(filmId, userId);
+                                                }
+                                        }
+                                }));
+                        }
+                        for (int i = 0; i < 200; i++) {
+                                filmLikesCountMaintainer.checkConsistency();
+                        }
+                        running.set(false);
+                        for (Future<?> writer : writers) {
+                                writer.get();
+                        }
+                } finally {
+                        running.set(false);
+                        executor.shutdownNow();
+                }
+
+                assertEquals(filmDbStorage.findLikesCounts(), popularFilmsIndex.snapshot());
+        }
 }
@@ -15,10 +15,11 @@ import org.springframework.context.annotation.Import;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
 
 @JdbcTest
 @AutoConfigureTestDatabase
-@Import({ UserDbStorage.class, UserMapper.class })
+@Import({ UserDbStorage.class, UserMapper.class, FriendGraphIndex.class })
 class FilmorateApplicationTests {
 
 	@Autowired
@@ -1,10 +1,16 @@
 package ru.yandex.practicum.filmorate;
 
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import org.junit.jupiter.api.DisplayName;
@@ -15,6 +21,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import ru.yandex.practicum.filmorate.util.TestJsonUtils;
 
@@ -116,4 +123,243 @@ class UserControllerIntegrationTest {
                 .content(userJson))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @DisplayName("Should return users page after given id")
+    void shouldReturnUsersPage() throws Exception {
+        String userJson = TestJsonUtils.readJsonFromFile("json/valid-user.json");
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(userJson))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/users").param("after_id", "1").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(2));
+    }
+
+    @Test
+    @DisplayName("Should not match ETag of a missing user after the user is created")
+    void shouldNotReuseMissingUserETagAfterCreate() throws Exception {
+        String etag = mockMvc.perform(get("/users/1"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(post("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/1").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+    }
+
+    @Test
+    @DisplayName("Should reject page with invalid limit")
+    void shouldRejectInvalidPageLimit() throws Exception {
+        mockMvc.perform(get("/users").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Should return only requested user fields")
+    void shouldReturnRequestedUserFields() throws Exception {
+        String userJson = TestJsonUtils.readJsonFromFile("json/valid-user.json");
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(userJson))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/users").param("fields", "login").param("after_id", "1").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\": 2, \"login\": \"testuser\"}]", true));
+        mockMvc.perform(get("/users").param("fields", "password"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Should page requested user fields when limit is omitted")
+    void shouldPageRequestedUserFieldsWithoutLimit() throws Exception {
+        for (int from = 1; from <= 1000; from += 500) {
+            StringBuilder ndjson = new StringBuilder();
+            for (int i = from; i < from + 500; i++) {
+                ndjson.append("{\"email\": \"user").append(i).append("@mail.ru\", \"login\": \"user").append(i)
+                        .append("\", \"birthday\": \"1990-01-01\"}\n");
+            }
+            mockMvc.perform(post("/users/bulk")
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .content(ndjson.toString()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.created").value(500));
+        }
+        mockMvc.perform(post("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"user1001@mail.ru\", \"login\": \"user1001\", \"birthday\": \"1990-01-01\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users").param("fields", "login"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1000))
+                .andExpect(jsonPath("$[999].id").value(1000));
+        mockMvc.perform(get("/users").param("fields", "login").param("after_id", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\": 1001, \"login\": \"user1001\"}]", true));
+        mockMvc.perform(get("/users").param("fields", "login").param("limit", "1001"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("limit must be between 1 and 1000"));
+    }
+
+    @Test
+    @DisplayName("Should stream users as NDJSON")
+    void shouldStreamUsersAsNdjson() throws Exception {
+        String userJson = TestJsonUtils.readJsonFromFile("json/valid-user.json");
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(userJson))
+                    .andExpect(status().isOk());
+        }
+
+        MvcResult result = mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":1,"));
+        assertTrue(lines[1].startsWith("{\"id\":2,"));
+    }
+
+    @Test
+    @DisplayName("Should import users from NDJSON and update existing users by login")
+    void shouldImportUsersFromNdjson() throws Exception {
+        mockMvc.perform(post("/users/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("""
+                        {"email": "first@mail.ru", "login": "first", "birthday": "1990-01-01"}
+                        {"email": "not-an-email", "login": "broken", "birthday": "1990-01-01"}
+
+                        {"email": "second@mail.ru", "login": "second", "name": "Second", "birthday": "1991-01-01"}
+                        """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.updated").value(0))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.errors[0].index").value(1));
+
+        mockMvc.perform(post("/users/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"email\": \"first@yandex.ru\", \"login\": \"first\", \"name\": \"First\", "
+                        + "\"birthday\": \"1990-01-01\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(0))
+                .andExpect(jsonPath("$.updated").value(1));
+
+        mockMvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].email").value("first@yandex.ru"))
+                .andExpect(jsonPath("$[0].name").value("First"))
+                .andExpect(jsonPath("$[1].name").value("Second"));
+    }
+
+    @Test
+    @DisplayName("Should report users saved before a malformed NDJSON line")
+    void shouldReportPartialImportOnMalformedNdjson() throws Exception {
+        mockMvc.perform(post("/users/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"email\": \"first@mail.ru\", \"login\": \"first\", \"birthday\": \"1990-01-01\"}\n"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/users/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("""
+                        {"email": "first@yandex.ru", "login": "first", "birthday": "1990-01-01"}
+                        {"email": "second@mail.ru", "login": "second", "birthday": "1991-01-01"}
+                        {"email": "third@mail.ru", "login": "third", "birthday": "someday"}
+                        {"email": "fourth@mail.ru", "login": "fourth", "birthday": "1991-01-01"}
+                        """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.rejected").value(0))
+                .andExpect(jsonPath("$.aborted").value(true))
+                .andExpect(jsonPath("$.errors.length()").value(1))
+                .andExpect(jsonPath("$.errors[0].index").value(2));
+
+        mockMvc.perform(get("/users"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].email").value("first@yandex.ru"))
+                .andExpect(jsonPath("$[1].login").value("second"));
+    }
+
+    @Test
+    @DisplayName("Should import users from CSV and export them back")
+    void shouldImportAndExportUsersAsCsv() throws Exception {
+        mockMvc.perform(post("/users/bulk")
+                .contentType("text/csv")
+                .content("""
+                        email,login,name,birthday
+                        first@mail.ru,first,"Doe, ""Johnny""\",1990-01-01
+                        second@mail.ru,second,,1991-01-01
+                        third@mail.ru,third,Third,someday
+                        """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.aborted").value(true))
+                .andExpect(jsonPath("$.errors[0].index").value(2))
+                .andExpect(jsonPath("$.errors[0].error").value(startsWith("Malformed row at index 2")));
+
+        MvcResult result = mockMvc.perform(get("/users").accept("text/csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals("""
+                id,email,login,name,birthday\r
+                1,first@mail.ru,first,"Doe, ""Johnny""\",1990-01-01\r
+                2,second@mail.ru,second,second,1991-01-01\r
+                """, body);
+    }
+
+    @Test
+    @DisplayName("Should export friendships as NDJSON and CSV")
+    void shouldExportFriendships() throws Exception {
+        mockMvc.perform(post("/users/bulk")
+                .contentType("text/csv")
+                .content("email,login,birthday\nfirst@mail.ru,first,1990-01-01\nsecond@mail.ru,second,1991-01-01\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2));
+        mockMvc.perform(put("/users/1/friends/2"))
+                .andExpect(status().isOk());
+
+        MvcResult ndjson = mockMvc.perform(get("/users/friendships"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"userId\":1,\"friendId\":2}\n"));
+
+        MvcResult csv = mockMvc.perform(get("/users/friendships").accept("text/csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(csv))
+                .andExpect(status().isOk())
+                .andExpect(content().string("user_id,friend_id\r\n1,2\r\n"));
+    }
 }
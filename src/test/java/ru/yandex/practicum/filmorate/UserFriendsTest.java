@@ -1,13 +1,23 @@
 package ru.yandex.practicum.filmorate;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,7 +26,11 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import ru.yandex.practicum.filmorate.storage.impl.FriendGraphIndexLoader;
+import ru.yandex.practicum.filmorate.storage.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
 import ru.yandex.practicum.filmorate.util.TestJsonUtils;
 
 @SpringBootTest
@@ -27,6 +41,18 @@ class UserFriendsTest {
         @Autowired
         private MockMvc mockMvc;
 
+        @Autowired
+        private UserDbStorage userDbStorage;
+
+        @Autowired
+        private FriendGraphIndex friendGraphIndex;
+
+        @Autowired
+        private FriendGraphIndexLoader friendGraphIndexLoader;
+
+        @Autowired
+        private TransactionTemplate transactionTemplate;
+
         @Test
         @DisplayName("Should be able to get user by id")
         void shouldGetUserById() throws Exception {
@@ -83,11 +109,14 @@ class UserFriendsTest {
                                 .parseInt(userResponse2.substring(userResponse2.indexOf("\"id\":") + 5,
                                                 userResponse2.indexOf(",")));
 
+                mockMvc.perform(put("/users/" + userId1 + "/friends/" + userId2))
+                                .andExpect(status().isOk());
                 mockMvc.perform(put("/users/" + userId1 + "/friends/" + userId2))
                                 .andExpect(status().isOk());
 
                 mockMvc.perform(get("/users/" + userId1 + "/friends"))
                                 .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(1))
                                 .andExpect(jsonPath("$[0].id").value(userId2));
 
                 mockMvc.perform(get("/users/" + userId2 + "/friends"))
@@ -128,6 +157,8 @@ class UserFriendsTest {
                 mockMvc.perform(put("/users/" + userId1 + "/friends/" + userId2))
                                 .andExpect(status().isOk());
 
+                mockMvc.perform(delete("/users/" + userId1 + "/friends/" + userId2))
+                                .andExpect(status().isOk());
                 mockMvc.perform(delete("/users/" + userId1 + "/friends/" + userId2))
                                 .andExpect(status().isOk());
 
@@ -196,4 +227,190 @@ class UserFriendsTest {
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$[0].id").value(userId3));
         }
+
+        @Test
+        @DisplayName("Should recommend friends of friends")
+        void shouldRecommendFriendsOfFriends() throws Exception {
+                int[] userIds = new int[4];
+                for (int i = 0; i < userIds.length; i++) {
+                        String userJson = "{\n" +
+                                        "  \"email\": \"rec" + i + "@example.com\",\n" +
+                                        "  \"login\": \"rec" + i + "\",\n" +
+                                        "  \"name\": \"Rec " + i + "\",\n" +
+                                        "  \"birthday\": \"2000-01-01\"\n" +
+                                        "}";
+                        String response = mockMvc.perform(post("/users")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(userJson))
+                                        .andExpect(status().isOk())
+                                        .andReturn().getResponse().getContentAsString();
+                        userIds[i] = Integer.parseInt(response.substring(response.indexOf("\"id\":") + 5,
+                                        response.indexOf(",")));
+                }
+
+                mockMvc.perform(put("/users/" + userIds[0] + "/friends/" + userIds[1]))
+                                .andExpect(status().isOk());
+                mockMvc.perform(put("/users/" + userIds[1] + "/friends/" + userIds[2]))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(get("/users/" + userIds[0] + "/recommendations"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(1))
+                                .andExpect(jsonPath("$[0].id").value(userIds[2]));
+
+                mockMvc.perform(put("/users/" + userIds[0] + "/friends/" + userIds[2]))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(get("/users/" + userIds[0] + "/recommendations"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().json("[]"));
+
+                mockMvc.perform(get("/users/" + userIds[0] + "/recommendations?limit=0"))
+                                .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        @DisplayName("Should answer 304 for unchanged friends list")
+        void shouldSupportConditionalFriendsRequests() throws Exception {
+                mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                                .andExpect(status().isOk());
+                String friendResponse = mockMvc.perform(post("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"email\": \"friend@example.com\", \"login\": \"friend\", "
+                                                + "\"name\": \"Friend\", \"birthday\": \"2000-01-01\"}"))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+                mockMvc.perform(put("/users/1/friends/2"))
+                                .andExpect(status().isOk());
+
+                String etag = mockMvc.perform(get("/users/1/friends"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().exists("ETag"))
+                                .andReturn().getResponse().getHeader("ETag");
+                mockMvc.perform(get("/users/1/friends").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+
+                mockMvc.perform(put("/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(friendResponse.replace("\"Friend\"", "\"Renamed\"")))
+                                .andExpect(status().isOk());
+
+                mockMvc.perform(get("/users/1/friends").header("If-None-Match", etag))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$[0].name").value("Renamed"));
+        }
+
+        @Test
+        @DisplayName("Should accept concurrent retries of the same friend request")
+        void shouldAcceptConcurrentFriendRetries() throws Exception {
+                for (int i = 0; i < 2; i++) {
+                        mockMvc.perform(post("/users")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                                        .andExpect(status().isOk());
+                }
+
+                int threads = 8;
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                        for (int round = 0; round < 20; round++) {
+                                CountDownLatch start = new CountDownLatch(1);
+                                List<Future<Integer>> statuses = new ArrayList<>();
+                                for (int i = 0; i < threads; i++) {
+                                        statuses.add(executor.submit(() -> {
+                                                start.await();
+                                                return mockMvc.perform(put("/users/1/friends/2"))
+                                                                .andReturn().getResponse().getStatus();
+                                        }));
+                                }
+                                start.countDown();
+                                for (Future<Integer> status : statuses) {
+                                        assertEquals(200, status.get());
+                                }
+
+                                mockMvc.perform(get("/users/1/friends"))
+                                                .andExpect(status().isOk())
+                                                .andExpect(jsonPath("$.length()").value(1));
+                                mockMvc.perform(delete("/users/1/friends/2"))
+                                                .andExpect(status().isOk());
+                        }
+                } finally {
+                        executor.shutdownNow();
+                }
+        }
+
+        @Test
+        @DisplayName("Should not change friend graph when transaction is rolled back")
+        void shouldNotChangeFriendGraphOnRollback() throws Exception {
+                createUsers(2);
+
+                transactionTemplate.executeWithoutResult(tx -> {
+                        userDbStorage.addFriend(1, 2);
+                        tx.setRollbackOnly();
+                });
+
+                assertEquals(0, friendGraphIndex.getFriendIds(1).length);
+                mockMvc.perform(put("/users/1/friends/2"))
+                                .andExpect(status().isOk());
+                assertEquals(1, friendGraphIndex.getFriendIds(1).length);
+        }
+
+        @Test
+        @DisplayName("Should keep friend graph in sync with concurrent add and remove of the same pair")
+        void shouldKeepFriendGraphInSyncWithConcurrentAddAndRemove() throws Exception {
+                createUsers(2);
+
+                int threads = 8;
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                        CountDownLatch start = new CountDownLatch(1);
+                        List<Future<?>> writers = new ArrayList<>();
+                        for (int i = 0; i < threads; i++) {
+                                boolean adding = i % 2 == 0;
+                                writers.add(executor.submit(() -> {
+                                        start.await();
+                                        for (int round = 0; round < 200; round++) {
+                                                if (adding) {
+                                                        userDbStorage.addFriend(1, 2);
+                                                } else {
+                                                        userDbStorage.removeFriend(1, 2);
+                                                }
+                                        }
+                                        return null;
+                                }));
+                        }
+                        start.countDown();
+                        for (Future<?> writer : writers) {
+                                writer.get();
+                        }
+                } finally {
+                        executor.shutdownNow();
+                }
+
+                assertTrue(friendGraphIndex.matches(userDbStorage.loadFriendGraph()));
+        }
+
+        @Test
+        @DisplayName("Should repair friend graph on consistency check")
+        void shouldRepairFriendGraphOnConsistencyCheck() throws Exception {
+                createUsers(2);
+                friendGraphIndex.addFriend(1, 2);
+
+                friendGraphIndexLoader.checkConsistency();
+
+                mockMvc.perform(get("/users/1/friends"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.length()").value(0));
+        }
+
+        private void createUsers(int count) throws Exception {
+                for (int i = 0; i < count; i++) {
+                        mockMvc.perform(post("/users")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                                        .andExpect(status().isOk());
+                }
+        }
 }
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class BulkheadDataSourceTest {
+
+    @Mock
+    private DataSource targetDataSource;
+
+    @Mock
+    private Connection connection;
+
+    private BulkheadDataSource bulkheadDataSource;
+
+    @BeforeEach
+    void setUp() {
+        bulkheadDataSource = new BulkheadDataSource(targetDataSource, 1, 50);
+    }
+
+    @Test
+    void shouldRejectConnectionWhenBulkheadIsFull() throws SQLException {
+        when(targetDataSource.getConnection()).thenReturn(connection);
+
+        Connection first = bulkheadDataSource.getConnection();
+
+        assertEquals(1, bulkheadDataSource.getActiveConnections());
+        assertThrows(SQLTransientConnectionException.class, () -> bulkheadDataSource.getConnection());
+        first.close();
+        verify(connection).close();
+    }
+
+    @Test
+    void shouldReleasePermitOnceWhenConnectionIsClosedTwice() throws SQLException {
+        when(targetDataSource.getConnection()).thenReturn(connection);
+
+        Connection first = bulkheadDataSource.getConnection();
+        first.close();
+        first.close();
+
+        assertEquals(0, bulkheadDataSource.getActiveConnections());
+        Connection second = bulkheadDataSource.getConnection();
+        assertEquals(1, bulkheadDataSource.getActiveConnections());
+        second.close();
+    }
+
+    @Test
+    void shouldReleasePermitWhenTargetFails() throws SQLException {
+        when(targetDataSource.getConnection()).thenThrow(new SQLException("boom"));
+
+        assertThrows(SQLException.class, () -> bulkheadDataSource.getConnection());
+        assertEquals(0, bulkheadDataSource.getActiveConnections());
+    }
+}
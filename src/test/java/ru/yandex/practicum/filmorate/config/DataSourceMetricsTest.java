@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.config;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:metricsdb",
+        "spring.datasource.hikari.pool-name=filmorate",
+        "filmorate.datasource.bulkhead.enabled=true"
+})
+@AutoConfigureMockMvc
+@DirtiesContext
+class DataSourceMetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("Should expose connection pool metrics")
+    void shouldExposeConnectionPoolMetrics() throws Exception {
+        mockMvc.perform(get("/users"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/metrics/hikaricp.connections.active").param("tag", "pool:filmorate"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics/hikaricp.connections.idle"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics/hikaricp.connections.acquire"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").isNumber());
+    }
+
+    @Test
+    @DisplayName("Should expose bulkhead metrics")
+    void shouldExposeBulkheadMetrics() throws Exception {
+        mockMvc.perform(get("/actuator/metrics/filmorate.datasource.bulkhead.active"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/metrics/filmorate.datasource.bulkhead.queued"))
+                .andExpect(status().isOk());
+    }
+}
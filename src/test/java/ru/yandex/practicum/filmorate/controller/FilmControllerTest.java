@@ -1,10 +1,12 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -18,6 +20,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.context.request.WebRequest;
 
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
@@ -30,6 +33,9 @@ class FilmControllerTest {
     @Mock
     private FilmService filmService;
 
+    @Mock
+    private WebRequest request;
+
     @InjectMocks
     private FilmController filmController;
 
@@ -106,14 +112,23 @@ class FilmControllerTest {
     @Test
     void shouldGetFilmById() {
         when(filmService.getFilmById(1)).thenReturn(Optional.of(film));
-        Film foundFilm = filmController.getFilmById(1);
+        Film foundFilm = filmController.getFilmById(1, request);
         assertEquals("Test Film", foundFilm.getName());
     }
 
+    @Test
+    void shouldReturnNotModifiedWithoutLoadingFilm() {
+        when(filmService.getFilmETag(1)).thenReturn("film-1-a-0");
+        when(request.checkNotModified("film-1-a-0")).thenReturn(true);
+
+        assertNull(filmController.getFilmById(1, request));
+        verify(filmService, never()).getFilmById(anyInt());
+    }
+
     @Test
     void shouldThrowExceptionWhenFilmNotFound() {
         when(filmService.getFilmById(999)).thenReturn(Optional.empty());
-        assertThrows(NotFoundException.class, () -> filmController.getFilmById(999));
+        assertThrows(NotFoundException.class, () -> filmController.getFilmById(999, request));
     }
 
     @Test
@@ -121,13 +136,23 @@ class FilmControllerTest {
         List<Film> films = List.of(film, popularFilm);
         when(filmService.getAllFilms()).thenReturn(films);
 
-        List<Film> result = filmController.getAllFilms();
+        List<Film> result = filmController.getAllFilms(0, null);
 
         assertEquals(2, result.size());
         assertEquals(1, result.get(0).getId());
         assertEquals(2, result.get(1).getId());
     }
 
+    @Test
+    void shouldGetFilmsPageWhenLimitIsSet() {
+        when(filmService.getFilmsPage(1, 1)).thenReturn(List.of(popularFilm));
+
+        List<Film> result = filmController.getAllFilms(1, 1);
+
+        assertEquals(1, result.size());
+        assertEquals(2, result.get(0).getId());
+    }
+
     @Test
     void shouldAddLike() {
         doNothing().when(filmService).addLike(anyInt(), anyInt());
@@ -151,7 +176,7 @@ class FilmControllerTest {
         List<Film> popularFilms = List.of(popularFilm, film);
         when(filmService.getPopularFilms(10)).thenReturn(popularFilms);
 
-        List<Film> result = filmController.getPopularFilms(10);
+        List<Film> result = filmController.getPopularFilms(10, request);
 
         assertEquals(2, result.size());
         assertEquals("Popular Film", result.get(0).getName());
@@ -18,12 +18,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.context.request.WebRequest;
 
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 @ExtendWith(MockitoExtension.class)
 class UserControllerTest {
+    @Mock
+    private WebRequest request;
+
     @Mock
     private UserService userService;
 
@@ -121,7 +125,7 @@ class UserControllerTest {
         user.setId(1);
         when(userService.getUserById(1)).thenReturn(Optional.of(user));
 
-        User foundUser = userController.getUserById(1);
+        User foundUser = userController.getUserById(1, request);
         assertEquals(1, foundUser.getId());
         assertEquals("Test User", foundUser.getName());
     }
@@ -134,7 +138,7 @@ class UserControllerTest {
 
         when(userService.getAllUsers()).thenReturn(users);
 
-        List<User> result = userController.getAllUsers();
+        List<User> result = userController.getAllUsers(0, null);
 
         assertEquals(2, result.size());
         assertEquals(1, result.get(0).getId());
@@ -165,7 +169,7 @@ class UserControllerTest {
 
         when(userService.getFriends(1)).thenReturn(friends);
 
-        List<User> result = userController.getFriends(1);
+        List<User> result = userController.getFriends(1, request);
 
         assertEquals(1, result.size());
         assertEquals(2, result.get(0).getId());
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ru.yandex.practicum.filmorate.util.TestJsonUtils;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:requestmetricsdb")
+@AutoConfigureMockMvc
+@DirtiesContext
+class RequestMetricsFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Should record SQL statements, response size and storage timings per endpoint")
+    void shouldRecordRequestMetrics() throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                .andExpect(status().isOk());
+        String body = mockMvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        DistributionSummary statements = meterRegistry.get("filmorate.http.sql.statements")
+                .tag("method", "GET")
+                .tag("uri", "/users")
+                .summary();
+        assertEquals(1, statements.count());
+        assertEquals(1, statements.totalAmount());
+
+        DistributionSummary responseSize = meterRegistry.get("filmorate.http.response.size")
+                .tag("method", "GET")
+                .tag("uri", "/users")
+                .summary();
+        assertEquals(body.length(), responseSize.totalAmount());
+
+        Timer findAll = meterRegistry.get("filmorate.storage")
+                .tag("class", "ru.yandex.practicum.filmorate.storage.impl.UserDbStorage")
+                .tag("method", "findAll")
+                .timer();
+        assertEquals(1, findAll.count());
+    }
+}
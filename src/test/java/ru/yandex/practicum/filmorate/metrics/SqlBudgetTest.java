@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+class SqlBudgetTest {
+
+    private final SqlBudget budget = new SqlBudget(SqlBudget.Mode.REJECT, 3, true,
+            new ByteArrayResource("# comment\nGET /films/{id} 1\n\nPOST /films 6\n".getBytes(StandardCharsets.UTF_8)));
+
+    @Test
+    void shouldUseBaselineLimitsAndDefault() {
+        assertEquals(1, budget.limitFor("GET /films/{id}"));
+        assertEquals(6, budget.limitFor("POST /films"));
+        assertEquals(3, budget.limitFor("GET /users"));
+    }
+
+    @Test
+    void shouldRejectWhenEndpointExceedsBaseline() {
+        SqlTrace trace = new SqlTrace(() -> "GET /films/{id}");
+        trace.record("FilmDbStorage.findFilmWithGenresById");
+        budget.check(trace);
+
+        trace.record("GenreDbStorage.getFilmGenres");
+        SqlBudgetExceededException e = assertThrows(SqlBudgetExceededException.class, () -> budget.check(trace));
+        assertTrue(e.getMessage().contains("GenreDbStorage.getFilmGenres"));
+    }
+
+    @Test
+    void shouldOnlyCountInLogMode() {
+        SqlBudget logBudget = new SqlBudget(SqlBudget.Mode.LOG, 0, false, null);
+        SqlTrace trace = new SqlTrace(() -> "GET /films");
+        trace.record(null);
+
+        assertDoesNotThrow(() -> logBudget.check(trace));
+        assertEquals(1, trace.getStatements());
+        assertTrue(trace.getCallSites().isEmpty());
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
+
+class FilmRecommendationEngineTest {
+
+    private UserLikesIndex index;
+    private FilmRecommendationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        index = new UserLikesIndex();
+        index.rebuild(Map.of(
+                1, new int[] { 10, 11, 12 },
+                2, new int[] { 10, 11, 20 },
+                3, new int[] { 12, 21, 20 },
+                4, new int[] { 30 }));
+        engine = new FilmRecommendationEngine(index);
+    }
+
+    @Test
+    void shouldRecommendFilmsWeightedByOverlap() {
+        assertArrayEquals(new int[] { 20, 21 }, engine.recommend(1, 10));
+        assertArrayEquals(new int[] { 20 }, engine.recommend(1, 1));
+    }
+
+    @Test
+    void shouldReturnEmptyWithoutLikes() {
+        assertArrayEquals(new int[0], engine.recommend(5, 10));
+    }
+
+    @Test
+    void shouldReflectIncrementalUpdates() {
+        index.addLike(1, 20);
+        index.addLike(4, 12);
+
+        assertArrayEquals(new int[] { 21, 30 }, engine.recommend(1, 10));
+    }
+
+    @Test
+    void shouldScoreManyUsersInParallel() {
+        Map<Integer, int[]> likes = new HashMap<>();
+        likes.put(0, new int[] { 1, 2, 3 });
+        for (int userId = 1; userId <= FilmRecommendationEngine.PARALLEL_THRESHOLD; userId++) {
+            likes.put(userId, userId % 100 == 0 ? new int[] { 1, 2, 500 } : new int[] { 3, 1000 + userId });
+        }
+        index.rebuild(likes);
+
+        assertEquals(500, engine.recommend(0, 1)[0]);
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+
+class FriendRecommendationEngineTest {
+
+    private FriendGraphIndex index;
+    private FriendRecommendationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        index = new FriendGraphIndex();
+        index.rebuild(Map.of(
+                1, new int[] { 2, 3 },
+                2, new int[] { 1, 4, 5 },
+                3, new int[] { 5, 6 }));
+        engine = new FriendRecommendationEngine(index);
+    }
+
+    @Test
+    void shouldRankByMutualFriendsExcludingSelfAndFriends() {
+        assertArrayEquals(new int[] { 5, 4, 6 }, engine.recommend(1, 10));
+    }
+
+    @Test
+    void shouldApplyLimit() {
+        assertArrayEquals(new int[] { 5 }, engine.recommend(1, 1));
+        assertArrayEquals(new int[] { 5, 4 }, engine.recommend(1, 2));
+    }
+
+    @Test
+    void shouldInvalidateCacheWhenGraphChanges() {
+        assertArrayEquals(new int[] { 5, 4, 6 }, engine.recommend(1, 10));
+
+        index.addFriend(1, 5);
+        index.addFriend(3, 4);
+
+        assertArrayEquals(new int[] { 4, 6 }, engine.recommend(1, 10));
+    }
+
+    @Test
+    void shouldScoreLargeGraphInParallel() {
+        Map<Integer, int[]> graph = new HashMap<>();
+        int friends = 200;
+        graph.put(0, IntStream.rangeClosed(1, friends).toArray());
+        for (int friendId = 1; friendId <= friends; friendId++) {
+            int first = friendId;
+            graph.put(friendId, IntStream.range(0, FriendRecommendationEngine.PARALLEL_THRESHOLD / friends + 1)
+                    .map(i -> 1000 + i * (first % 2 == 0 ? 1 : 2))
+                    .toArray());
+        }
+        index.rebuild(graph);
+
+        int[] recommended = engine.recommend(0, 3);
+
+        assertArrayEquals(new int[] { 1000, 1002, 1004 }, recommended);
+    }
+}
@@ -1,30 +1,48 @@
 package ru.yandex.practicum.filmorate.service;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.IntFunction;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
 
+import jakarta.validation.Validator;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.TooManyRequestsException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.FilmImportResult;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.LikeOperationResult;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.recommendation.FilmRecommendationEngine;
 import ru.yandex.practicum.filmorate.service.impl.FilmServiceImpl;
+import ru.yandex.practicum.filmorate.service.impl.LikeWriteBehindQueue;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.cache.PopularFilmsCache;
 
 @ExtendWith(MockitoExtension.class)
 class FilmServiceImplTest {
@@ -41,6 +59,24 @@ class FilmServiceImplTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private FilmRecommendationEngine filmRecommendationEngine;
+
+    @Mock
+    private EntityVersions entityVersions;
+
+    @Mock
+    private PopularFilmsCache popularFilmsCache;
+
+    @Mock
+    private LikeWriteBehindQueue likeWriteBehindQueue;
+
+    @Mock
+    private Validator validator;
+
+    @Spy
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
     @InjectMocks
     private FilmServiceImpl filmService;
 
@@ -111,6 +147,8 @@ class FilmServiceImplTest {
 
         when(filmStorage.getMostPopularFilms(anyInt())).thenReturn(films);
         when(genreService.getGenresForFilms(filmIds)).thenReturn(filmGenres);
+        when(popularFilmsCache.get(eq(10), any())).thenAnswer(invocation ->
+                invocation.<IntFunction<List<Film>>>getArgument(1).apply(10));
 
         List<Film> result = filmService.getPopularFilms(10);
 
@@ -119,20 +157,168 @@ class FilmServiceImplTest {
         verify(genreService).getGenresForFilms(filmIds);
     }
 
+    @Test
+    void shouldGetFilmByIdWithGenresInSingleStorageCall() {
+        when(filmStorage.findFilmWithGenresById(1)).thenReturn(Optional.of(film));
+
+        Optional<Film> result = filmService.getFilmById(1);
+
+        assertTrue(result.isPresent());
+        assertEquals(genres, result.get().getGenres());
+        verify(genreService, never()).getFilmGenres(anyInt());
+    }
+
+    @Test
+    void shouldImportFilmsInBatchesAndReportRejected() {
+        Film early = new Film();
+        early.setReleaseDate(LocalDate.of(1800, 1, 1));
+        early.setMpa(mpa);
+        when(mpaService.getMpaById(1)).thenReturn(Optional.of(mpa));
+        when(genreService.resolveGenres(genres)).thenReturn(genres);
+        when(filmStorage.createAll(any())).thenAnswer(invocation -> {
+            List<Film> films = invocation.getArgument(0);
+            films.forEach(created -> created.setId(10));
+            return films;
+        });
+
+        FilmImportResult result = filmService.importFilms(List.of(early, film).iterator());
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getRejected());
+        assertEquals(0, result.getErrors().get(0).getIndex());
+        verify(transactionOperations).executeWithoutResult(any());
+        verify(genreService).addGenresToFilms(Map.of(10, genres));
+        verify(popularFilmsCache).invalidate();
+    }
+
+    @Test
+    void shouldLoadGenresOnlyWhenRequested() {
+        Map<String, Object> row = new HashMap<>(Map.of("id", 1, "name", "Film"));
+        when(filmStorage.findPageFields(0, 10, EnumSet.of(FilmField.NAME))).thenReturn(List.of(row));
+
+        List<Map<String, Object>> films = filmService.getFilmsFields(Set.of("name"), 0, 10);
+
+        assertEquals(List.of(Map.of("id", 1, "name", "Film")), films);
+        verifyNoInteractions(genreService);
+
+        when(filmStorage.findPageFields(0, 1000, EnumSet.of(FilmField.GENRES)))
+                .thenReturn(List.of(new HashMap<>(Map.of("id", 1))));
+        when(genreService.getGenresForFilms(List.of(1))).thenReturn(Map.of(1, genres));
+
+        films = filmService.getFilmsFields(Set.of("genres"), 0, null);
+
+        assertEquals(genres, films.get(0).get("genres"));
+    }
+
+    @Test
+    void shouldRejectUnknownFilmField() {
+        assertThrows(ValidationException.class, () -> filmService.getFilmsFields(Set.of("rating"), 0, null));
+        verifyNoInteractions(filmStorage);
+    }
+
     @Test
     void shouldAddLike() {
-        when(filmStorage.findFilmById(anyInt())).thenReturn(Optional.of(film));
+        when(filmStorage.existsById(anyInt())).thenReturn(true);
         when(userService.getUserById(anyInt())).thenReturn(Optional.of(new ru.yandex.practicum.filmorate.model.User()));
 
+        when(filmStorage.addLike(1, 1)).thenReturn(true);
+
         filmService.addLike(1, 1);
 
         verify(filmStorage).addLike(1, 1);
+        verify(popularFilmsCache).invalidate();
+    }
+
+    @Test
+    void shouldNotInvalidatePopularFilmsOnRepeatedLike() {
+        when(filmStorage.existsById(anyInt())).thenReturn(true);
+        when(userService.getUserById(anyInt())).thenReturn(Optional.of(new ru.yandex.practicum.filmorate.model.User()));
+        when(filmStorage.addLike(1, 1)).thenReturn(false);
+
+        filmService.addLike(1, 1);
+
+        verify(popularFilmsCache, never()).invalidate();
+    }
+
+    @Test
+    void shouldQueueLikeWhenWriteBehindEnabled() {
+        when(filmStorage.existsById(anyInt())).thenReturn(true);
+        when(userService.getUserById(anyInt())).thenReturn(Optional.of(new ru.yandex.practicum.filmorate.model.User()));
+        when(likeWriteBehindQueue.isEnabled()).thenReturn(true);
+        when(likeWriteBehindQueue.submit(any())).thenReturn(true);
+
+        filmService.removeLike(1, 2);
+
+        verify(likeWriteBehindQueue).submit(new LikeOperation(1, 2, LikeOperation.Type.UNLIKE));
+        verify(filmStorage, never()).removeLike(anyInt(), anyInt());
+    }
+
+    @Test
+    void shouldRejectLikeWhenWriteBehindQueueIsFull() {
+        when(filmStorage.existsById(anyInt())).thenReturn(true);
+        when(userService.getUserById(anyInt())).thenReturn(Optional.of(new ru.yandex.practicum.filmorate.model.User()));
+        when(likeWriteBehindQueue.isEnabled()).thenReturn(true);
+        when(likeWriteBehindQueue.submit(any())).thenReturn(false);
+
+        assertThrows(TooManyRequestsException.class, () -> filmService.addLike(1, 1));
+        verify(filmStorage, never()).addLike(anyInt(), anyInt());
     }
 
     @Test
     void shouldThrowNotFoundExceptionWhenFilmNotFoundForAddLike() {
-        when(filmStorage.findFilmById(anyInt())).thenReturn(Optional.empty());
+        when(filmStorage.existsById(anyInt())).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> filmService.addLike(999, 1));
     }
+
+    @Test
+    void shouldApplyValidLikeOperationsAndReportOutcomes() {
+        List<LikeOperation> operations = List.of(
+                new LikeOperation(1, 1, LikeOperation.Type.LIKE),
+                new LikeOperation(2, 1, LikeOperation.Type.LIKE),
+                new LikeOperation(1, 9, LikeOperation.Type.LIKE),
+                new LikeOperation(1, 1, LikeOperation.Type.LIKE),
+                new LikeOperation(1, 1, null));
+        List<LikeOperation> validOperations = List.of(operations.get(0), operations.get(3));
+
+        when(filmStorage.findExistingIds(Set.of(1, 2))).thenReturn(Set.of(1));
+        when(userService.getExistingUserIds(Set.of(1, 9))).thenReturn(Set.of(1));
+        when(filmStorage.applyLikes(validOperations)).thenReturn(new boolean[] { true, false });
+
+        List<LikeOperationResult> results = filmService.applyLikes(operations);
+
+        assertEquals(LikeOperationResult.Status.APPLIED, results.get(0).getStatus());
+        assertEquals(LikeOperationResult.Status.FILM_NOT_FOUND, results.get(1).getStatus());
+        assertEquals(LikeOperationResult.Status.USER_NOT_FOUND, results.get(2).getStatus());
+        assertEquals(LikeOperationResult.Status.UNCHANGED, results.get(3).getStatus());
+        assertEquals(LikeOperationResult.Status.INVALID, results.get(4).getStatus());
+    }
+
+    @Test
+    void shouldReportNullLikeOperationAsInvalid() {
+        List<LikeOperation> operations = Arrays.asList(new LikeOperation(1, 1, LikeOperation.Type.LIKE), null);
+
+        when(filmStorage.findExistingIds(Set.of(1))).thenReturn(Set.of(1));
+        when(userService.getExistingUserIds(Set.of(1))).thenReturn(Set.of(1));
+        when(filmStorage.applyLikes(List.of(operations.get(0)))).thenReturn(new boolean[] { true });
+
+        List<LikeOperationResult> results = filmService.applyLikes(operations);
+
+        assertEquals(LikeOperationResult.Status.APPLIED, results.get(0).getStatus());
+        assertEquals(LikeOperationResult.Status.INVALID, results.get(1).getStatus());
+    }
+
+    @Test
+    void shouldLoadRecommendedFilmsInEngineOrder() {
+        User user = new User();
+        user.setId(1);
+        when(userService.getUserById(1)).thenReturn(Optional.of(user));
+        when(filmRecommendationEngine.recommend(1, 10)).thenReturn(new int[] { 7, 3 });
+        when(filmStorage.findFilmsWithGenresByIds(List.of(7, 3))).thenReturn(List.of(film));
+
+        List<Film> result = filmService.getRecommendedFilms(1, 10);
+
+        assertEquals(List.of(film), result);
+        verify(filmStorage, never()).findAll();
+    }
 }
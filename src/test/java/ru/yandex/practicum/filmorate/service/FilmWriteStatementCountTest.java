@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.metrics.SqlStatementCounter;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:filmwritesdb",
+        "filmorate.sql.budget.mode=LOG"
+})
+@DirtiesContext
+class FilmWriteStatementCountTest {
+
+    @Autowired
+    private FilmService filmService;
+
+    @BeforeEach
+    void warmUpReferenceData() {
+        filmService.createFilm(film(0, 1, 2));
+    }
+
+    @Test
+    void shouldCreateFilmWithGenresInThreeStatements() {
+        Film film = film(0, 2, 1, 2);
+
+        Film created = countStatements(3, () -> filmService.createFilm(film));
+
+        assertEquals(List.of(1, 2), created.getGenres().stream().map(Genre::getId).toList());
+        assertEquals("Комедия", created.getGenres().get(0).getName());
+    }
+
+    @Test
+    void shouldUpdateFilmWithoutSeparateExistenceCheck() {
+        Film created = filmService.createFilm(film(0, 1));
+
+        countStatements(4, () -> filmService.updateFilm(film(created.getId(), 3)));
+        assertEquals(List.of(3), filmService.getFilmById(created.getId()).orElseThrow().getGenres().stream()
+                .map(Genre::getId).toList());
+    }
+
+    @Test
+    void shouldNotRewriteUnchangedGenres() {
+        Film created = filmService.createFilm(film(0, 1, 2));
+
+        countStatements(2, () -> filmService.updateFilm(film(created.getId(), 2, 1)));
+    }
+
+    @Test
+    void shouldWriteOnlyGenresDelta() {
+        Film created = filmService.createFilm(film(0, 1, 2));
+
+        countStatements(3, () -> filmService.updateFilm(film(created.getId(), 1, 2, 3)));
+        assertEquals(List.of(1, 2, 3), filmService.getFilmById(created.getId()).orElseThrow().getGenres().stream()
+                .map(Genre::getId).toList());
+    }
+
+    @Test
+    void shouldDeleteOnlyRemovedGenres() {
+        Film created = filmService.createFilm(film(0, 1, 2));
+
+        countStatements(3, () -> filmService.updateFilm(film(created.getId(), 2)));
+        assertEquals(List.of(2), filmService.getFilmById(created.getId()).orElseThrow().getGenres().stream()
+                .map(Genre::getId).toList());
+    }
+
+    @Test
+    void shouldRejectUnknownFilmByUpdateRowCount() {
+        countStatements(1, () -> assertThrows(NotFoundException.class,
+                () -> filmService.updateFilm(film(9999, 1))));
+    }
+
+    @Test
+    void shouldRejectUnknownGenreWithoutQueries() {
+        countStatements(0, () -> assertThrows(NotFoundException.class,
+                () -> filmService.createFilm(film(0, 1, 999))));
+    }
+
+    private static <T> T countStatements(int expected, Supplier<T> action) {
+        SqlStatementCounter.start(() -> "test");
+        try {
+            T result = action.get();
+            assertEquals(expected, SqlStatementCounter.current().getStatements(),
+                    () -> "Statements: " + SqlStatementCounter.current().getCallSites());
+            return result;
+        } finally {
+            SqlStatementCounter.stop();
+        }
+    }
+
+    private static Film film(int id, int... genreIds) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName("Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(new Mpa(1, null));
+        film.setGenres(Arrays.stream(genreIds).mapToObj(genreId -> new Genre(genreId, null)).toList());
+        return film;
+    }
+}
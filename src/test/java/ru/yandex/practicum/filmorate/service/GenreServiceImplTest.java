@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -90,8 +91,6 @@ class GenreServiceImplTest {
 
     @Test
     void shouldAddGenresToFilm() {
-        when(genreStorage.findGenreById(1)).thenReturn(Optional.of(genre));
-
         genreService.addGenresToFilm(1, genres);
 
         verify(genreStorage).addFilmGenres(1, genres);
@@ -99,8 +98,6 @@ class GenreServiceImplTest {
 
     @Test
     void shouldUpdateFilmGenres() {
-        when(genreStorage.findGenreById(1)).thenReturn(Optional.of(genre));
-
         genreService.updateFilmGenres(1, genres);
 
         verify(genreStorage).updateFilmGenres(1, genres);
@@ -112,8 +109,24 @@ class GenreServiceImplTest {
         unknownGenre.setId(999);
         List<Genre> genresWithUnknown = List.of(unknownGenre);
 
-        when(genreStorage.findGenreById(999)).thenReturn(Optional.empty());
+        when(genreStorage.findGenresByIds(Set.of(999))).thenReturn(List.of());
 
-        assertThrows(NotFoundException.class, () -> genreService.addGenresToFilm(1, genresWithUnknown));
+        assertThrows(NotFoundException.class, () -> genreService.resolveGenres(genresWithUnknown));
+    }
+
+    @Test
+    void shouldResolveGenresInSingleLookup() {
+        Genre drama = new Genre();
+        drama.setId(2);
+        drama.setName("Drama");
+        Genre duplicate = new Genre();
+        duplicate.setId(1);
+        when(genreStorage.findGenresByIds(Set.of(2, 1))).thenReturn(List.of(genre, drama));
+
+        List<Genre> result = genreService.resolveGenres(List.of(drama, genre, duplicate));
+
+        assertEquals(List.of(genre, drama), result);
+        verify(genreStorage, times(1)).findGenresByIds(any());
+        verify(genreStorage, never()).findGenreById(anyInt());
     }
 }
@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.service.impl.LikeWriteBehindQueue;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.cache.PopularFilmsCache;
+
+class LikeWriteBehindQueueTest {
+    private final FilmStorage filmStorage = mock(FilmStorage.class);
+    private final PopularFilmsCache popularFilmsCache = mock(PopularFilmsCache.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldKeepOnlyLastOperationPerFilmAndUser() {
+        LikeWriteBehindQueue queue = new LikeWriteBehindQueue(filmStorage, popularFilmsCache, meterRegistry,
+                false, 10, 50, 100, 1000);
+
+        queue.submit(new LikeOperation(1, 1, LikeOperation.Type.LIKE));
+        queue.submit(new LikeOperation(2, 1, LikeOperation.Type.LIKE));
+        queue.submit(new LikeOperation(1, 1, LikeOperation.Type.UNLIKE));
+        queue.flush();
+
+        verify(filmStorage).applyLikes(List.of(
+                new LikeOperation(2, 1, LikeOperation.Type.LIKE),
+                new LikeOperation(1, 1, LikeOperation.Type.UNLIKE)));
+        verify(popularFilmsCache).invalidate();
+        assertEquals(1, meterRegistry.get("filmorate.likes.write-behind.operations")
+                .tag("result", "coalesced").counter().count());
+    }
+
+    @Test
+    void shouldRejectOperationsWhenQueueIsFull() {
+        LikeWriteBehindQueue queue = new LikeWriteBehindQueue(filmStorage, popularFilmsCache, meterRegistry,
+                false, 1, 50, 100, 1000);
+
+        assertTrue(queue.submit(new LikeOperation(1, 1, LikeOperation.Type.LIKE)));
+        assertFalse(queue.submit(new LikeOperation(1, 2, LikeOperation.Type.LIKE)));
+        verify(filmStorage, never()).applyLikes(any());
+    }
+
+    @Test
+    void shouldDrainQueueOnClose() throws InterruptedException {
+        LikeWriteBehindQueue queue = new LikeWriteBehindQueue(filmStorage, popularFilmsCache, meterRegistry,
+                true, 10, 60_000, 100, 1000);
+
+        queue.submit(new LikeOperation(1, 1, LikeOperation.Type.LIKE));
+        queue.close();
+
+        verify(filmStorage).applyLikes(List.of(new LikeOperation(1, 1, LikeOperation.Type.LIKE)));
+    }
+
+    @Test
+    void shouldRetryFailedBatchAndRejectNewOperationsUntilItIsWritten() {
+        LikeWriteBehindQueue queue = new LikeWriteBehindQueue(filmStorage, popularFilmsCache, meterRegistry,
+                false, 10, 50, 100, 1000);
+        List<LikeOperation> batch = List.of(new LikeOperation(1, 1, LikeOperation.Type.LIKE));
+        when(filmStorage.applyLikes(batch))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(new boolean[] { true });
+
+        queue.submit(new LikeOperation(1, 1, LikeOperation.Type.LIKE));
+        assertFalse(queue.flush());
+        assertThrows(ServiceUnavailableException.class,
+                () -> queue.submit(new LikeOperation(2, 1, LikeOperation.Type.LIKE)));
+
+        assertTrue(queue.flush());
+        verify(filmStorage, times(2)).applyLikes(batch);
+        assertTrue(queue.submit(new LikeOperation(2, 1, LikeOperation.Type.LIKE)));
+        assertEquals(0, meterRegistry.get("filmorate.likes.write-behind.operations")
+                .tag("result", "failed").counter().count());
+    }
+
+    @Test
+    void shouldRefuseOperationsAfterClose() throws InterruptedException {
+        LikeWriteBehindQueue queue = new LikeWriteBehindQueue(filmStorage, popularFilmsCache, meterRegistry,
+                true, 10, 60_000, 100, 1000);
+
+        queue.close();
+
+        assertThrows(ServiceUnavailableException.class,
+                () -> queue.submit(new LikeOperation(1, 1, LikeOperation.Type.LIKE)));
+        verify(filmStorage, never()).applyLikes(any());
+    }
+}
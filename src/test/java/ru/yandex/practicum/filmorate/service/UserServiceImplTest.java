@@ -6,6 +6,7 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,11 +17,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import jakarta.validation.Validator;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserImportResult;
+import ru.yandex.practicum.filmorate.recommendation.FriendRecommendationEngine;
 import ru.yandex.practicum.filmorate.service.impl.UserServiceImpl;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.cache.EntityVersions;
 
 @ExtendWith(MockitoExtension.class)
 class UserServiceImplTest {
@@ -28,6 +33,15 @@ class UserServiceImplTest {
     @Mock
     private UserStorage userStorage;
 
+    @Mock
+    private FriendRecommendationEngine friendRecommendationEngine;
+
+    @Mock
+    private EntityVersions entityVersions;
+
+    @Mock
+    private Validator validator;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -87,6 +101,7 @@ class UserServiceImplTest {
 
         assertNotNull(result);
         verify(userStorage).update(any(User.class));
+        verify(entityVersions).userChanged(user.getId());
     }
 
     @Test
@@ -137,4 +152,53 @@ class UserServiceImplTest {
         assertEquals(1, commonFriends.size());
         assertEquals(3, commonFriends.get(0).getId());
     }
+
+    @Test
+    void shouldReturnRecommendationsInEngineOrder() {
+        User other = new User();
+        other.setId(3);
+        when(userStorage.findUserById(1)).thenReturn(Optional.of(user));
+        when(friendRecommendationEngine.recommend(1, 5)).thenReturn(new int[] { 3, 2 });
+        when(userStorage.findUsersByIds(List.of(3, 2))).thenReturn(List.of(other));
+
+        List<User> result = userService.getRecommendations(1, 5);
+
+        assertEquals(List.of(other), result);
+    }
+
+    @Test
+    void shouldRejectInvalidRecommendationsLimit() {
+        assertThrows(ValidationException.class, () -> userService.getRecommendations(1, 0));
+        verifyNoInteractions(friendRecommendationEngine);
+    }
+
+    @Test
+    void shouldImportUsersUpdatingExistingLogins() {
+        User renamed = new User();
+        renamed.setEmail("new@test.com");
+        renamed.setLogin("login");
+        renamed.setBirthday(LocalDate.of(2000, 1, 1));
+        User other = new User();
+        other.setEmail("other@test.com");
+        other.setLogin("other");
+        other.setName("other");
+        other.setBirthday(LocalDate.of(2000, 1, 1));
+        when(userStorage.upsertAllByLogin(any())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            users.get(0).setId(1);
+            users.get(1).setId(2);
+            return new boolean[] { false, true };
+        });
+
+        UserImportResult result = userService.importUsers(Arrays.asList(user, null, other, renamed).iterator());
+
+        verify(userStorage).upsertAllByLogin(List.of(renamed, other));
+        assertEquals("login", renamed.getName());
+        assertEquals(1, result.getCreated());
+        assertEquals(2, result.getUpdated());
+        assertEquals(1, result.getRejected());
+        assertEquals(1, result.getErrors().get(0).getIndex());
+        verify(entityVersions).userChanged(1);
+        verify(entityVersions).userChanged(2);
+    }
 }
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+
+class FriendGraphIndexTest {
+
+    private FriendGraphIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FriendGraphIndex();
+        index.rebuild(Map.of(
+                1, new int[] { 5, 3, 2 },
+                2, new int[] { 3, 4, 5 }));
+    }
+
+    @Test
+    void shouldKeepFriendIdsSorted() {
+        index.addFriend(1, 4);
+
+        assertArrayEquals(new int[] { 2, 3, 4, 5 }, index.getFriendIds(1));
+    }
+
+    @Test
+    void shouldIgnoreDuplicateFriend() {
+        index.addFriend(1, 3);
+
+        assertArrayEquals(new int[] { 2, 3, 5 }, index.getFriendIds(1));
+    }
+
+    @Test
+    void shouldRemoveFriend() {
+        index.removeFriend(1, 3);
+        index.removeFriend(1, 42);
+
+        assertArrayEquals(new int[] { 2, 5 }, index.getFriendIds(1));
+    }
+
+    @Test
+    void shouldIntersectFriendLists() {
+        assertArrayEquals(new int[] { 3, 5 }, index.getCommonFriendIds(1, 2));
+        assertArrayEquals(new int[0], index.getCommonFriendIds(1, 99));
+    }
+
+    @Test
+    void shouldMatchSameGraphRegardlessOfOrderAndEmptyLists() {
+        index.removeFriend(2, 3);
+        index.removeFriend(2, 4);
+        index.removeFriend(2, 5);
+
+        assertTrue(index.matches(Map.of(1, new int[] { 2, 5, 3 })));
+        assertFalse(index.matches(Map.of(1, new int[] { 2, 3 })));
+        assertFalse(index.matches(Map.of(1, new int[] { 2, 3, 5 }, 7, new int[] { 1 })));
+    }
+
+    @Test
+    void shouldReportFootprint() {
+        FriendGraphIndex.FootprintReport footprint = index.getFootprint();
+
+        assertEquals(2, footprint.users());
+        assertEquals(6, footprint.friendships());
+        assertTrue(footprint.estimatedBytes() > 0);
+    }
+
+    @Test
+    void shouldNeverExposePartiallyRebuiltGraph() throws InterruptedException {
+        Map<Integer, int[]> graph = new HashMap<>();
+        for (int userId = 1; userId <= 10_000; userId++) {
+            graph.put(userId, new int[] { userId + 1 });
+        }
+        AtomicBoolean sawMissingFriends = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (index.getFriendIds(1).length == 0 || index.getFriendIds(10_000).length == 0) {
+                    sawMissingFriends.set(true);
+                }
+            }
+        });
+        index.rebuild(graph);
+        reader.start();
+        for (int i = 0; i < 50; i++) {
+            index.rebuild(graph);
+        }
+        reader.interrupt();
+        reader.join();
+
+        assertFalse(sawMissingFriends.get());
+    }
+}
@@ -0,0 +1,196 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.impl.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.index.UserLikesIndex;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryGenreStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.memory.WriteAheadLog;
+import ru.yandex.practicum.filmorate.storage.memory.WriteAheadLogFactory;
+
+class InMemoryStorageRecoveryTest {
+
+    @TempDir
+    Path walDir;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final GenreDbStorage referenceGenres = mock(GenreDbStorage.class);
+    private final MpaStorage mpaStorage = mock(MpaStorage.class);
+
+    @BeforeEach
+    void setUp() {
+        when(mpaStorage.findMpaById(anyInt())).thenAnswer(invocation ->
+                Optional.of(new Mpa(invocation.getArgument(0), "G")));
+        when(referenceGenres.findGenresByIds(any())).thenAnswer(invocation ->
+                invocation.<Collection<Integer>>getArgument(0).stream()
+                        .map(id -> new Genre(id, "Genre " + id))
+                        .toList());
+    }
+
+    @Test
+    void shouldRecoverFilmsGenresAndLikesFromLog() {
+        Stores first = new Stores();
+        Film created = first.films.create(film("Film"));
+        first.films.create(film("Other"));
+        first.genres.addFilmGenres(created.getId(), List.of(new Genre(2, null), new Genre(1, null)));
+        created.setName("Renamed");
+        first.films.update(created);
+        first.films.addLike(created.getId(), 7);
+        first.films.applyLikes(List.of(
+                new LikeOperation(created.getId(), 8, LikeOperation.Type.LIKE),
+                new LikeOperation(2, 7, LikeOperation.Type.LIKE),
+                new LikeOperation(2, 7, LikeOperation.Type.UNLIKE)));
+        first.close();
+
+        Stores recovered = new Stores();
+        Film film = recovered.films.findFilmWithGenresById(created.getId()).orElseThrow();
+        assertEquals("Renamed", film.getName());
+        assertEquals("G", film.getMpa().getName());
+        assertEquals(List.of(1, 2), film.getGenres().stream().map(Genre::getId).toList());
+        assertEquals(List.of(created.getId(), 2), recovered.popularFilmsIndex.getTopFilmIds(10));
+        assertArrayEquals(new int[] { created.getId() }, recovered.userLikesIndex.getLikedFilmIds(7));
+        assertEquals(3, recovered.films.create(film("New")).getId());
+        recovered.close();
+    }
+
+    @Test
+    void shouldRecoverUsersAndFriendshipsFromLog() {
+        Stores first = new Stores();
+        User user = first.users.create(user("first"));
+        User friend = first.users.create(user("second"));
+        User removed = first.users.create(user("third"));
+        first.users.addFriend(user.getId(), friend.getId());
+        first.users.addFriend(user.getId(), removed.getId());
+        first.users.removeFriend(user.getId(), removed.getId());
+        first.close();
+
+        Stores recovered = new Stores();
+        assertEquals(List.of("second"), recovered.users.getFriends(user.getId()).stream()
+                .map(User::getLogin)
+                .toList());
+        assertEquals(3, recovered.users.findAll().size());
+        recovered.close();
+    }
+
+    @Test
+    void shouldRecoverFromSnapshotsAndLaterRecords() {
+        Stores first = new Stores();
+        Film liked = first.films.create(film("Liked"));
+        Film unliked = first.films.create(film("Unliked"));
+        first.genres.updateFilmGenres(liked.getId(), List.of(new Genre(3, null)));
+        first.films.addLike(liked.getId(), 1);
+        first.films.addLike(unliked.getId(), 1);
+        User user = first.users.create(user("first"));
+        User friend = first.users.create(user("second"));
+        first.users.addFriend(user.getId(), friend.getId());
+        first.films.snapshot();
+        first.genres.snapshot();
+        first.users.snapshot();
+        first.films.removeLike(unliked.getId(), 1);
+        first.films.addLike(liked.getId(), 2);
+        first.close();
+
+        Stores recovered = new Stores();
+        assertEquals(List.of(liked.getId(), unliked.getId()), recovered.popularFilmsIndex.getTopFilmIds(10));
+        assertArrayEquals(new int[] { liked.getId() }, recovered.userLikesIndex.getLikedFilmIds(1));
+        assertArrayEquals(new int[] { liked.getId() }, recovered.userLikesIndex.getLikedFilmIds(2));
+        assertEquals(List.of(3), recovered.genres.getFilmGenres(liked.getId()).stream().map(Genre::getId).toList());
+        assertEquals(List.of("second"), recovered.users.getFriends(user.getId()).stream()
+                .map(User::getLogin)
+                .toList());
+        recovered.close();
+    }
+
+    @Test
+    void shouldCreateEachLoginOnceWhenImportsRunConcurrently() throws Exception {
+        Stores stores = new Stores();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<boolean[]>> imports = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                imports.add(executor.submit(() -> stores.users.upsertAllByLogin(
+                        IntStream.range(0, 200).mapToObj(login -> user("login" + login)).toList())));
+            }
+            int created = 0;
+            for (Future<boolean[]> result : imports) {
+                for (boolean isCreated : result.get()) {
+                    created += isCreated ? 1 : 0;
+                }
+            }
+            assertEquals(200, created);
+            assertEquals(200, stores.users.findAll().size());
+        } finally {
+            executor.shutdown();
+            stores.close();
+        }
+    }
+
+    private class Stores {
+        final WriteAheadLogFactory walFactory = new WriteAheadLogFactory(walDir, WriteAheadLog.SyncPolicy.ALWAYS,
+                Duration.ZERO, new SimpleMeterRegistry());
+        final PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex();
+        final UserLikesIndex userLikesIndex = new UserLikesIndex();
+        final InMemoryGenreStorage genres = new InMemoryGenreStorage(referenceGenres, walFactory);
+        final InMemoryFilmStorage films = new InMemoryFilmStorage(genres, mpaStorage, popularFilmsIndex,
+                userLikesIndex, objectMapper, walFactory);
+        final InMemoryUserStorage users = new InMemoryUserStorage(new FriendGraphIndex(), objectMapper, walFactory);
+
+        void close() {
+            films.close();
+            genres.close();
+            users.close();
+        }
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(new Mpa(1, null));
+        film.setGenres(new ArrayList<>());
+        return film;
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
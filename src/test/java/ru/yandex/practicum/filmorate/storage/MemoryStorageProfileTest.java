@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.memory.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.util.TestJsonUtils;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:memstoredb",
+        "filmorate.sql.budget.mode=LOG"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("memstore")
+@DirtiesContext
+class MemoryStorageProfileTest {
+
+    @TempDir
+    static Path walDir;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @DynamicPropertySource
+    static void walProperties(DynamicPropertyRegistry registry) {
+        registry.add("filmorate.memstore.wal-dir", () -> walDir.toString());
+    }
+
+    @Test
+    @DisplayName("Should serve films, likes and friends from memory and log every write")
+    void shouldServeFromMemoryStorage() throws Exception {
+        assertInstanceOf(InMemoryFilmStorage.class, filmStorage);
+        assertInstanceOf(InMemoryUserStorage.class, userStorage);
+
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestJsonUtils.readJsonFromFile("json/valid-user.json")))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestJsonUtils.readJsonFromFile("json/film-with-genres.json")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+        mockMvc.perform(put("/films/1/like/1"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/popular"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].mpa.name").value("PG-13"))
+                .andExpect(jsonPath("$[0].genres.length()").value(2));
+        mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.genres[0].name").value("Комедия"));
+        mockMvc.perform(put("/users/1/friends/2"))
+                .andExpect(status().isNotFound());
+
+        assertEquals(2, Files.readAllLines(walDir.resolve("films.wal")).size());
+        assertEquals(1, Files.readAllLines(walDir.resolve("users.wal")).size());
+        assertEquals(1, Files.readAllLines(walDir.resolve("film-genres.wal")).size());
+    }
+}
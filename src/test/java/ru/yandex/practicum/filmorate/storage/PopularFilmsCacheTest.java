@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.cache.PopularFilmsCache;
+
+class PopularFilmsCacheTest {
+
+    private AtomicInteger loads;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        loads = new AtomicInteger();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldServeRepeatedRequestsFromCache() {
+        PopularFilmsCache cache = new PopularFilmsCache(meterRegistry, Duration.ZERO);
+
+        cache.get(10, this::load);
+        List<Film> films = cache.get(10, this::load);
+
+        assertEquals(1, loads.get());
+        assertEquals(10, films.get(0).getId());
+        assertEquals(0.5, meterRegistry.get("filmorate.popular.cache.hit.ratio").gauge().value());
+        assertEquals(1, meterRegistry.get("filmorate.popular.cache.rebuild").timer().count());
+    }
+
+    @Test
+    void shouldRebuildAfterInvalidationWithoutStalenessWindow() {
+        PopularFilmsCache cache = new PopularFilmsCache(meterRegistry, Duration.ZERO);
+        cache.get(10, this::load);
+        long version = cache.getVersion(10);
+
+        cache.invalidate();
+
+        assertNotEquals(version, cache.getVersion(10));
+        cache.get(10, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldServeStaleEntryWithinStalenessWindow() {
+        PopularFilmsCache cache = new PopularFilmsCache(meterRegistry, Duration.ofMinutes(1));
+        cache.get(10, this::load);
+        long version = cache.getVersion(10);
+
+        cache.invalidate();
+        cache.invalidate();
+
+        assertEquals(version, cache.getVersion(10));
+        cache.get(10, this::load);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldIgnoreStalenessWindowAfterEviction() {
+        PopularFilmsCache cache = new PopularFilmsCache(meterRegistry, Duration.ofMinutes(1));
+        cache.get(10, this::load);
+
+        cache.evictAll();
+        cache.get(10, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldLoadOnceForConcurrentMisses() throws Exception {
+        PopularFilmsCache cache = new PopularFilmsCache(meterRegistry, Duration.ZERO);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FutureTask<List<Film>> first = new FutureTask<>(() -> cache.get(10, count -> {
+            loading.countDown();
+            awaitQuietly(release);
+            return load(count);
+        }));
+        FutureTask<List<Film>> second = new FutureTask<>(() -> cache.get(10, this::load));
+        new Thread(first).start();
+        loading.await();
+        Thread waiter = new Thread(second);
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING && !second.isDone()) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertEquals(first.get(), second.get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldNotExposeCachedFilmsToCallerMutations() {
+        PopularFilmsCache cache = new PopularFilmsCache(meterRegistry, Duration.ZERO);
+        List<Film> films = cache.get(10, this::load);
+
+        films.get(0).setName("Changed");
+        films.get(0).getGenres().add(new Genre(1, "Комедия"));
+        films.clear();
+        List<Film> cached = cache.get(10, this::load);
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cached.size());
+        assertEquals("Film 10", cached.get(0).getName());
+        assertTrue(cached.get(0).getGenres().isEmpty());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Film> load(int count) {
+        loads.incrementAndGet();
+        Film film = new Film();
+        film.setId(count);
+        film.setName("Film " + count);
+        return List.of(film);
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsIndex;
+
+class PopularFilmsIndexTest {
+
+    private PopularFilmsIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PopularFilmsIndex();
+        index.rebuild(Map.of(1, 1, 2, 3, 3, 0));
+    }
+
+    @Test
+    void shouldReturnFilmsOrderedByLikes() {
+        assertEquals(List.of(2, 1, 3), index.getTopFilmIds(10));
+    }
+
+    @Test
+    void shouldLimitResultToCount() {
+        assertEquals(List.of(2), index.getTopFilmIds(1));
+    }
+
+    @Test
+    void shouldReorderFilmsOnLikeChanges() {
+        index.increment(3);
+        index.increment(3);
+        index.increment(3);
+        index.decrement(2);
+
+        assertEquals(List.of(3, 2, 1), index.getTopFilmIds(3));
+    }
+
+    @Test
+    void shouldOrderFilmsWithSameLikesById() {
+        index.register(4);
+        index.increment(4);
+
+        assertEquals(List.of(2, 1, 4, 3), index.getTopFilmIds(4));
+    }
+
+    @Test
+    void shouldNotGoBelowZeroLikes() {
+        index.decrement(3);
+
+        assertEquals(0, index.snapshot().get(3));
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
+
+class ReferenceDataCacheTest {
+
+    private AtomicInteger loads;
+    private ReferenceDataCache<Genre> cache;
+
+    @BeforeEach
+    void setUp() {
+        loads = new AtomicInteger();
+        cache = new ReferenceDataCache<>("genres", () -> {
+            loads.incrementAndGet();
+            return List.of(new Genre(1, "Комедия"), new Genre(3, "Мультфильм"));
+        }, Genre::getId, genre -> new Genre(genre.getId(), genre.getName()));
+    }
+
+    @Test
+    void shouldLoadDataOnceAndServeLookupsFromMemory() {
+        Optional<Genre> first = cache.findById(1);
+        Optional<Genre> second = cache.findById(3);
+
+        assertTrue(first.isPresent());
+        assertEquals("Мультфильм", second.orElseThrow().getName());
+        assertEquals(2, cache.findAll().size());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldCountHitsAndMisses() {
+        cache.findById(1);
+        cache.findById(2);
+        cache.findById(-1);
+        cache.contains(3);
+
+        ReferenceDataCache.CacheStats stats = cache.getStats();
+        assertEquals(2, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(2, stats.size());
+    }
+
+    @Test
+    void shouldPublishHitsMissesAndSizeAsMeters() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        cache.bindTo(meterRegistry);
+
+        cache.findById(1);
+        cache.findById(3);
+        cache.findById(2);
+
+        assertEquals(2, meterRegistry.get("filmorate.reference.cache.gets")
+                .tags("cache", "genres", "result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("filmorate.reference.cache.gets")
+                .tags("cache", "genres", "result", "miss").functionCounter().count());
+        assertEquals(2, meterRegistry.get("filmorate.reference.cache.size").tag("cache", "genres").gauge().value());
+    }
+
+    @Test
+    void shouldReloadDataAfterInvalidation() {
+        cache.findById(1);
+        cache.invalidate();
+        cache.findById(1);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldNotExposeCachedInstances() {
+        cache.findById(1).orElseThrow().setName("Изменено");
+        cache.findAll().get(1).setName("Изменено");
+
+        assertEquals("Комедия", cache.findById(1).orElseThrow().getName());
+        assertEquals("Мультфильм", cache.findAll().get(1).getName());
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.UUID;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+class SchemaMigrationTest {
+
+    @Test
+    void baselinedDatabaseGetsFilmLikesCountFilledFromLikes() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:migration-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "password");
+        // База, созданная до Flyway через schema.sql и data.sql
+        new ResourceDatabasePopulator(
+                new ClassPathResource("db/migration/V1__create_schema.sql"),
+                new ClassPathResource("db/migration/V2__reference_data.sql")).execute(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO users (user_id, email, login, name, birthday) "
+                + "VALUES (1, 'a@mail.ru', 'a', 'A', '1990-01-01'), (2, 'b@mail.ru', 'b', 'B', '1990-01-01')");
+        jdbcTemplate.update("INSERT INTO films (film_id, name, description, release_date, duration, mpa_id) "
+                + "VALUES (1, 'F1', 'D', '2000-01-01', 100, 1), (2, 'F2', 'D', '2000-01-01', 100, 1)");
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (1, 1), (1, 2)");
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("2")
+                .load()
+                .migrate();
+
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT likes_count FROM film_likes_count WHERE film_id = 1", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT likes_count FROM film_likes_count WHERE film_id = 2", Integer.class));
+    }
+}
@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ru.yandex.practicum.filmorate.storage.memory.WriteAheadLog;
+import ru.yandex.practicum.filmorate.storage.memory.WriteAheadLog.SyncPolicy;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldRecoverRecordsInOrder() {
+        try (WriteAheadLog wal = open(SyncPolicy.ALWAYS)) {
+            wal.recover(record -> fail("Log should be empty"));
+            wal.write("first");
+            wal.write("второй");
+            wal.commit();
+        }
+
+        assertEquals(List.of("first", "второй"), recover());
+    }
+
+    @Test
+    void shouldDiscardTornRecordAndContinueAppending() throws IOException {
+        Path path = dir.resolve("test.wal");
+        Files.writeString(path, "complete\nto", StandardCharsets.UTF_8, StandardOpenOption.CREATE);
+
+        try (WriteAheadLog wal = open(SyncPolicy.ALWAYS)) {
+            assertEquals(1, wal.recover(record -> { }));
+            wal.write("next");
+            wal.commit();
+        }
+
+        assertEquals("complete\nnext\n", Files.readString(path));
+    }
+
+    @Test
+    void shouldRecoverFromSnapshotAndRecordsWrittenAfterCompaction() {
+        try (WriteAheadLog wal = open(SyncPolicy.ALWAYS)) {
+            wal.recover(record -> { });
+            wal.write("a");
+            wal.write("b");
+            wal.compact(out -> out.accept("ab"));
+            assertEquals(0, wal.size());
+            wal.write("c");
+            wal.commit();
+        }
+
+        assertEquals(List.of("ab", "c"), recover());
+        assertFalse(Files.exists(dir.resolve("test.wal.prev")));
+    }
+
+    @Test
+    void shouldReplayPreviousLogLeftByInterruptedCompaction() throws IOException {
+        Files.writeString(dir.resolve("test.snapshot"), "old\n");
+        Files.writeString(dir.resolve("test.wal.prev"), "rotated\n");
+        Files.writeString(dir.resolve("test.wal"), "current\n");
+
+        assertEquals(List.of("old", "rotated", "current"), recover());
+    }
+
+    @Test
+    void shouldWriteRecordsUnderRelaxedSyncPolicies() {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, "interval", SyncPolicy.INTERVAL, Duration.ofMillis(10),
+                meterRegistry);
+             WriteAheadLog unsynced = new WriteAheadLog(dir, "never", SyncPolicy.NEVER, Duration.ZERO,
+                     meterRegistry)) {
+            wal.recover(record -> { });
+            unsynced.recover(record -> { });
+            wal.mutate(() -> wal.write("interval"));
+            wal.commit();
+            unsynced.mutate(() -> unsynced.write("never"));
+            unsynced.commit();
+        }
+
+        List<String> records = new ArrayList<>();
+        try (WriteAheadLog wal = new WriteAheadLog(dir, "interval", SyncPolicy.INTERVAL, Duration.ofMillis(10),
+                meterRegistry);
+             WriteAheadLog unsynced = new WriteAheadLog(dir, "never", SyncPolicy.NEVER, Duration.ZERO,
+                     meterRegistry)) {
+            wal.recover(records::add);
+            unsynced.recover(records::add);
+        }
+        assertEquals(List.of("interval", "never"), records);
+    }
+
+    @Test
+    void shouldKeepSyncingInBackgroundAfterFailure() throws Exception {
+        // Запись должна остаться несброшенной до поломки, поэтому интервал больше времени до неё
+        WriteAheadLog wal = new WriteAheadLog(dir, "interval", SyncPolicy.INTERVAL, Duration.ofMillis(200),
+                meterRegistry);
+        wal.recover(record -> { });
+        wal.mutate(() -> wal.write("unsynced"));
+        // Каталог на месте предыдущего файла ломает ротацию, после неё канал журнала закрыт
+        Files.createDirectory(dir.resolve("interval.wal.prev"));
+        assertThrows(UncheckedIOException.class, () -> wal.compact(snapshot -> { }));
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (syncFailures() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(syncFailures() >= 2, "Background sync should keep running after a failure");
+        assertThrows(UncheckedIOException.class, wal::close);
+    }
+
+    private WriteAheadLog open(SyncPolicy syncPolicy) {
+        return new WriteAheadLog(dir, "test", syncPolicy, Duration.ZERO, meterRegistry);
+    }
+
+    private List<String> recover() {
+        List<String> records = new ArrayList<>();
+        try (WriteAheadLog wal = open(SyncPolicy.ALWAYS)) {
+            wal.recover(records::add);
+        }
+        return records;
+    }
+
+    private double syncFailures() {
+        return meterRegistry.get("filmorate.memstore.wal.sync.failures").tag("log", "interval").counter().count();
+    }
+}